@@ -0,0 +1,123 @@
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+
+/**
+ * The Field workload, written in the default package so that it can use
+ * the simulation's classes. See bench.Workloads.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class SavannahFieldWorkload implements bench.FieldWorkload, Field.CellVisitor
+{
+    // The number of random locations the probes cycle through.
+    private static final int PROBES = 1024;
+    // What a lion looks for: live prey.
+    private static final Predicate<Actor> PREY =
+        (actor) -> actor.isActive() && Species.LION.canEat(actor.getSpecies());
+
+    private Field field;
+    // A second field of the same size for placeActors to fill.
+    private Field scratch;
+    private Location[] probes;
+    private int nextProbe;
+    // The animals of the field, and the row and column of each.
+    private Actor[] animals;
+    private int[] rows, cols;
+    // The cells counted by visit.
+    private int occupied;
+
+    @Override
+    public void setUp(int depth, int width, double density, long seed)
+    {
+        SplittableRandom rand = new SplittableRandom(seed);
+        Randomizer.use(rand);
+        field = new Field(depth, width);
+        scratch = new Field(depth, width);
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                if(rand.nextDouble() < density) {
+                    field.placeActor(create(rand.nextInt(4), new Location(row, col)), row, col);
+                }
+            }
+        }
+        int count = field.getActors().size();
+        animals = field.getActors().toArray(new Actor[count]);
+        rows = new int[count];
+        cols = new int[count];
+        for(int n = 0; n < count; n++) {
+            rows[n] = animals[n].getLocation().row();
+            cols[n] = animals[n].getLocation().col();
+        }
+        probes = new Location[PROBES];
+        for(int n = 0; n < PROBES; n++) {
+            probes[n] = new Location(rand.nextInt(depth), rand.nextInt(width));
+        }
+    }
+
+    /**
+     * @return A new animal of the species with the given number.
+     */
+    private static Actor create(int species, Location location)
+    {
+        return switch(species) {
+            case 0 -> new Zebra(true, location);
+            case 1 -> new Hyena(true, location);
+            case 2 -> new Giraffe(true, location);
+            default -> new Lion(true, location);
+        };
+    }
+
+    /**
+     * @return The next probe location.
+     */
+    private Location nextProbe()
+    {
+        nextProbe = (nextProbe + 1) & (PROBES - 1);
+        return probes[nextProbe];
+    }
+
+    @Override
+    public int visitAdjacent()
+    {
+        occupied = 0;
+        field.forEachAdjacent(nextProbe(), 1, this);
+        return occupied;
+    }
+
+    @Override
+    public void visit(int row, int col, Actor occupant)
+    {
+        if(occupant != null) {
+            occupied++;
+        }
+    }
+
+    @Override
+    public Object findActor()
+    {
+        return field.findActor(nextProbe(), 1, PREY);
+    }
+
+    @Override
+    public Object findFreeLocation()
+    {
+        return field.getRandomFreeLocation(nextProbe(), 1);
+    }
+
+    @Override
+    public int placeActors()
+    {
+        scratch.clear();
+        for(int n = 0; n < animals.length; n++) {
+            scratch.placeActor(animals[n], rows[n], cols[n]);
+        }
+        return animals.length;
+    }
+
+    @Override
+    public boolean isViable()
+    {
+        return field.isViable();
+    }
+}
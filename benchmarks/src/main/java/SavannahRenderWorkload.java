@@ -0,0 +1,54 @@
+/**
+ * The render workload, written in the default package so that it can use
+ * the simulation's classes. See bench.Workloads.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class SavannahRenderWorkload implements bench.RenderWorkload
+{
+    // A field that knows which cells changed in its last step, as the
+    // view's fields do, and one that does not.
+    private Field changedField;
+    private Field wholeField;
+    private String time;
+    private FieldRenderer renderer;
+
+    @Override
+    public void setUp(int depth, int width, long seed)
+    {
+        Simulator recording = new Simulator(depth, width, true, seed);
+        recording.setRecordingChanges(true);
+        recording.simulateOneStep();
+        changedField = recording.getField();
+        Simulator plain = new Simulator(depth, width, true, seed);
+        plain.simulateOneStep();
+        wholeField = plain.getField();
+        time = "Step: " + recording.getStep();
+        renderer = new FieldRenderer(depth, width);
+        renderer.show(time, wholeField);
+        renderer.draw();
+    }
+
+    @Override
+    public boolean drawWholeField()
+    {
+        renderer.show(time, wholeField);
+        return renderer.draw();
+    }
+
+    @Override
+    public boolean drawChangedCells()
+    {
+        renderer.show(time, changedField);
+        return renderer.draw();
+    }
+
+    @Override
+    public boolean drawMergedFrames()
+    {
+        renderer.show(time, changedField);
+        renderer.show(time, changedField);
+        return renderer.draw();
+    }
+}
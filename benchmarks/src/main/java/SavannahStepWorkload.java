@@ -0,0 +1,37 @@
+/**
+ * The step workload, written in the default package so that it can use
+ * the simulation's classes. See bench.Workloads.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class SavannahStepWorkload implements bench.StepWorkload
+{
+    private Simulator simulator;
+
+    @Override
+    public void setUp(int depth, int width, int threads, long seed, double density)
+    {
+        Parameters parameters = Parameters.DEFAULTS;
+        for(int id = 0; id < Species.COUNT; id++) {
+            Species species = Species.byId(id);
+            parameters = parameters.with(species.toString().toLowerCase() + ".creation",
+                                         density * Parameters.DEFAULTS.getCreationProbability(species));
+        }
+        simulator = new Simulator(depth, width, true, seed, parameters);
+        simulator.setThreads(threads);
+    }
+
+    @Override
+    public int step()
+    {
+        simulator.simulateOneStep();
+        return simulator.getStep();
+    }
+
+    @Override
+    public void tearDown()
+    {
+        simulator.setThreads(0);
+    }
+}
@@ -0,0 +1,42 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line, always adding the
+ * GC profiler so that every result comes with its allocation rate
+ * (gc.alloc.rate.norm is the bytes allocated per operation).
+ *
+ * For example, to run only the step benchmarks at one size:
+ * <pre>
+ *   java -jar target/benchmarks.jar StepBenchmark -p size=400x600
+ * </pre>
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class BenchmarkMain
+{
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if(commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        Options options = new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class)
+            .build();
+        Runner runner = new Runner(options);
+        if(commandLine.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+}
@@ -0,0 +1,78 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The neighbourhood queries and bookkeeping of Field that every animal
+ * uses every step, at several field sizes and densities.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldBenchmark
+{
+    @Param({"80x120", "400x600", "2000x2000"})
+    public String size;
+
+    @Param({"0.05", "0.3", "0.9"})
+    public double density;
+
+    private FieldWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        int[] dimensions = Workloads.parseSize(size);
+        workload = Workloads.load(FieldWorkload.class, "SavannahFieldWorkload");
+        workload.setUp(dimensions[0], dimensions[1], density, 42);
+    }
+
+    @Benchmark
+    public int forEachAdjacent()
+    {
+        return workload.visitAdjacent();
+    }
+
+    @Benchmark
+    public Object findActor()
+    {
+        return workload.findActor();
+    }
+
+    @Benchmark
+    public Object getRandomFreeLocation()
+    {
+        return workload.findFreeLocation();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int placeActor()
+    {
+        return workload.placeActors();
+    }
+
+    @Benchmark
+    public boolean isViable()
+    {
+        return workload.isViable();
+    }
+}
@@ -0,0 +1,48 @@
+package bench;
+
+/**
+ * The hot paths of Field, on a field filled to a given density.
+ * Each call probes around the next of a fixed set of random locations.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public interface FieldWorkload
+{
+    /**
+     * Fill a new field with animals of every species.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param density The chance each cell holds an animal.
+     * @param seed The seed for the animals and the probes.
+     */
+    void setUp(int depth, int width, double density, long seed);
+
+    /**
+     * @return The number of occupied cells around the next probe, found
+     *         with Field.forEachAdjacent.
+     */
+    int visitAdjacent();
+
+    /**
+     * @return The result of Field.findActor for prey around the next probe.
+     */
+    Object findActor();
+
+    /**
+     * @return The result of Field.getRandomFreeLocation around the next probe.
+     */
+    Object findFreeLocation();
+
+    /**
+     * Clear a second field and place every animal into it with
+     * Field.placeActor, as a step does.
+     * @return The number of animals placed.
+     */
+    int placeActors();
+
+    /**
+     * @return The result of Field.isViable.
+     */
+    boolean isViable();
+}
@@ -0,0 +1,65 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Drawing frames offscreen. SimulatorView is a window and cannot be
+ * created without a display, but everything it does between showStatus
+ * and putting the image on screen is done by its FieldRenderer, which
+ * these benchmarks drive directly: building the frame, merging it with a
+ * frame still waiting in the mailbox, and colouring the FieldImage.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark
+{
+    @Param({"80x120", "400x600", "2000x2000"})
+    public String size;
+
+    private RenderWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        int[] dimensions = Workloads.parseSize(size);
+        workload = Workloads.load(RenderWorkload.class, "SavannahRenderWorkload");
+        workload.setUp(dimensions[0], dimensions[1], 1111);
+    }
+
+    @Benchmark
+    public boolean drawWholeField()
+    {
+        return workload.drawWholeField();
+    }
+
+    @Benchmark
+    public boolean drawChangedCells()
+    {
+        return workload.drawChangedCells();
+    }
+
+    @Benchmark
+    public boolean drawMergedFrames()
+    {
+        return workload.drawMergedFrames();
+    }
+}
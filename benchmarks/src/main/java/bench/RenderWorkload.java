@@ -0,0 +1,42 @@
+package bench;
+
+/**
+ * Turning a field into a frame and drawing it offscreen, with the
+ * FieldRenderer that SimulatorView draws every frame with.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public interface RenderWorkload
+{
+    /**
+     * Create a populated headless simulation, step it once, and create a
+     * renderer for its field.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param seed The seed of the simulation.
+     */
+    void setUp(int depth, int width, long seed);
+
+    /**
+     * Show and draw a field that did not record its changes, so every
+     * cell is copied out of it and drawn.
+     * @return Whether the image changed, so the work is not optimised away.
+     */
+    boolean drawWholeField();
+
+    /**
+     * Show and draw a field that recorded the cells that changed in its
+     * last step, as the view does after every step.
+     * @return Whether the image changed, so the work is not optimised away.
+     */
+    boolean drawChangedCells();
+
+    /**
+     * Show the changed field twice before drawing, so that the second
+     * frame is merged with the first, as when the simulation runs faster
+     * than the view draws.
+     * @return Whether the image changed, so the work is not optimised away.
+     */
+    boolean drawMergedFrames();
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole steps of a headless simulation, on the serial and the tiled engine.
+ * Every iteration starts again from a freshly populated field, so each
+ * measures the same stretch of the simulation rather than a field that
+ * earlier iterations left to the predators. The density scales the
+ * creation probability of every species, from a sparse field to the
+ * crowded one the defaults give.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StepBenchmark
+{
+    @Param({"80x120", "400x600", "1000x1000"})
+    public String size;
+
+    @Param({"0", "2"})
+    public int threads;
+
+    @Param({"0.25", "1"})
+    public double density;
+
+    private StepWorkload workload;
+
+    @Setup(Level.Trial)
+    public void load()
+    {
+        workload = Workloads.load(StepWorkload.class, "SavannahStepWorkload");
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        int[] dimensions = Workloads.parseSize(size);
+        workload.setUp(dimensions[0], dimensions[1], threads, 1111, density);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown()
+    {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    public int simulateOneStep()
+    {
+        return workload.step();
+    }
+}
@@ -0,0 +1,32 @@
+package bench;
+
+/**
+ * Whole simulation steps with Simulator.simulateOneStep.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public interface StepWorkload
+{
+    /**
+     * Create and populate a headless simulation.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param threads 0 for the serial engine, or the number of threads.
+     * @param seed The seed of the simulation.
+     * @param density How many times the default creation probability
+     *                of every species the field is populated with.
+     */
+    void setUp(int depth, int width, int threads, long seed, double density);
+
+    /**
+     * Run one step.
+     * @return The number of steps run so far.
+     */
+    int step();
+
+    /**
+     * Stop any threads the simulation started.
+     */
+    void tearDown();
+}
@@ -0,0 +1,49 @@
+package bench;
+
+/**
+ * Loads the workloads that drive the simulation.
+ *
+ * JMH will not generate code for benchmarks in the default package, but
+ * the simulation lives there, and a class in a named package cannot refer
+ * to a class in the default package. So each benchmark only knows an
+ * interface from this package, and the class that implements it is
+ * written in the default package, next to the simulation, and looked up
+ * by name. There is only ever one class behind each interface, so the JIT
+ * inlines the calls through it.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public final class Workloads
+{
+    private Workloads()
+    {
+    }
+
+    /**
+     * Create a workload.
+     * @param type The interface of the workload.
+     * @param className The name of the default-package class implementing it.
+     * @return A new instance of the class.
+     */
+    public static <T> T load(Class<T> type, String className)
+    {
+        try {
+            return Class.forName(className).asSubclass(type).getDeclaredConstructor().newInstance();
+        }
+        catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create workload " + className, e);
+        }
+    }
+
+    /**
+     * @param size A field size written as depth x width, such as "80x120".
+     * @return The depth and the width.
+     */
+    public static int[] parseSize(String size)
+    {
+        int split = size.indexOf('x');
+        return new int[] { Integer.parseInt(size.substring(0, split)),
+                           Integer.parseInt(size.substring(split + 1)) };
+    }
+}
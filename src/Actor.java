@@ -6,16 +6,20 @@
  * @version 1.0.0
  */
 public abstract class Actor {
+    private final Species species; // The species of the actor
     private boolean active; // Indicates if the actor is still active
     protected Location location; // Current location of the actor in the simulation
+    private Field field; // The field the actor was last placed in
 
     /**
      * Constructor for a new Actor.
      * The actor is set to be active by default.
      *
+     * @param species The species of the actor.
      * @param location The initial location of the actor.
      */
-    public Actor(Location location) {
+    public Actor(Species species, Location location) {
+        this.species = species;
         this.active = true;
         this.location = location;
     }
@@ -30,6 +34,15 @@ public abstract class Actor {
      */
     public abstract void act(Field currentField, Field nextFieldState, Environment env);
 
+    /**
+     * Gets the species of the actor.
+     *
+     * @return The actor's species.
+     */
+    public Species getSpecies() {
+        return species;
+    }
+
     /**
      * Checks if the actor is still active in the simulation.
      *
@@ -66,6 +79,27 @@ public abstract class Actor {
      * @param active The new active state of the actor.
      */
     protected void setActive(boolean active) {
+        if (this.active && !active && field != null) {
+            field.actorDeactivated(this);
+        }
         this.active = active;
     }
+
+    /**
+     * Called when another actor is placed on top of this one, so that it
+     * is no longer in the field. The actor stops being active.
+     */
+    void displaced() {
+        setActive(false);
+    }
+
+    /**
+     * Records the field the actor has been placed in, so the field's
+     * population counts can be updated if the actor is deactivated.
+     *
+     * @param field The field the actor was placed in.
+     */
+    void setField(Field field) {
+        this.field = field;
+    }
 }
@@ -1,4 +1,4 @@
-import java.util.*;
+import java.util.random.RandomGenerator;
 /**
  * Common elements of animals 
  *
@@ -9,35 +9,35 @@ import java.util.*;
 
 public abstract class Animal extends Actor {
     protected static final double GENDER_PROBABILITY = 0.5;
-    private static final double DISEASE_LETHALITY = 0.2; // The chance a disease kills per step
-    private static final double DISEASE_SPREAD = 0.1; // The chance a disease spreads per step
-    private static final double NEW_DISEASE_CHANCE = 0.00001; // The chance a creature gets a new disease
-    protected static final Random rand = Randomizer.getRandom();
-    protected abstract int getMaxAge();
-    protected abstract double getBreedingProbability();
-    protected abstract int getMaxLitterSize();
-    protected abstract int getBreedingAge();
-
-    private final Gender gender;
+    // The diet bit of plants, which live in the field's vegetation layer rather than as actors.
+    private static final int PLANT_MASK = 1 << Species.PLANT.getId();
+
+    private Gender gender;
     private int foodLevel;
     private int age;
     private AnimalState state;
     private boolean diseased;
+    // The store holding this animal's values while it is attached, and its slot there.
+    // While attached, the fields above are out of date.
+    private AnimalStore store;
+    private int slot;
 
     /**
      * Constructs a new Animal; called by subclasses instead of directly.
+     * @param species the species of this animal
      * @param randomAge whether this animal should have a random age or be age 0
      * @param location the location to create this animal
      */
-    public Animal(boolean randomAge, Location location) {
-        super(location);
+    public Animal(Species species, boolean randomAge, Location location) {
+        super(species, location);
         this.gender = assignGender();
         age = 0;
         foodLevel = 24 * 14; // Can safely not eat for 2 weeks
         state = AnimalState.SLEEPING;
         diseased = false;
         if(randomAge) {
-            age = rand.nextInt(getMaxAge());
+            RandomGenerator rand = Randomizer.getRandom();
+            age = rand.nextInt(species.getMaxAge());
             foodLevel = rand.nextInt(24*21);
         }
     }
@@ -47,17 +47,75 @@ public abstract class Animal extends Actor {
      * @return Gender assigned to animal 
      */
     private Gender assignGender() {
-        return new Random().nextDouble() < GENDER_PROBABILITY ? Gender.MALE : Gender.FEMALE;
+        return Randomizer.getRandom().nextDouble() < GENDER_PROBABILITY ? Gender.MALE : Gender.FEMALE;
     }
 
     /**
      * Indicate that the animal is no longer active.
+     * @param cause What killed the animal. Only recorded if it was alive.
      */
-    protected void setDead()
+    protected void setDead(DeathCause cause)
     {
+        if (isActive()) {
+            DeathEvent event = new DeathEvent();
+            if (event.shouldCommit()) {
+                event.species = getSpecies().toString();
+                event.cause = cause.name();
+                event.age = getAge();
+                event.commit();
+            }
+        }
         setActive(false);
         location = null;
-        state = AnimalState.DEAD;
+        setState(AnimalState.DEAD);
+        detach();
+    }
+
+    /**
+     * Move this animal's values into a store, after which the animal reads
+     * and writes them there.
+     * @param animalStore The store to move into.
+     */
+    void attachTo(AnimalStore animalStore)
+    {
+        if (store == null && isActive()) {
+            slot = animalStore.attach(age, foodLevel, getSpecies().getMaxAge(), state, gender, diseased);
+            store = animalStore;
+        }
+    }
+
+    /**
+     * Set every value of this animal, for example from a saved snapshot.
+     * Must be called before the animal is attached to a store.
+     */
+    void restore(int age, int foodLevel, AnimalState state, Gender gender, boolean diseased)
+    {
+        this.age = age;
+        this.foodLevel = foodLevel;
+        this.state = state;
+        this.gender = gender;
+        this.diseased = diseased;
+    }
+
+    /**
+     * Copy this animal's values back out of its store and free its slot.
+     */
+    void detach()
+    {
+        if (store != null) {
+            age = store.getAge(slot);
+            foodLevel = store.getFoodLevel(slot);
+            state = store.getState(slot);
+            diseased = store.isDiseased(slot);
+            store.release(slot);
+            store = null;
+        }
+    }
+
+    @Override
+    void displaced()
+    {
+        setDead(DeathCause.OVERCROWDING);
     }
 
     /**
@@ -71,7 +129,7 @@ public abstract class Animal extends Actor {
      * @return the state of this Animal
      */
     protected AnimalState getState() {
-        return state;
+        return store == null ? state : store.getState(slot);
     }
 
     /**
@@ -79,7 +137,12 @@ public abstract class Animal extends Actor {
      * @param state the new AnimalState
      */
     protected void setState(AnimalState state) {
-        this.state = state;
+        if (store == null) {
+            this.state = state;
+        }
+        else {
+            store.setState(slot, state);
+        }
     }
 
     /**
@@ -88,15 +151,21 @@ public abstract class Animal extends Actor {
      */
     protected void incrementAge()
     {
-        age++;
-        if(age > getMaxAge()) {
-            setDead();
+        int newAge = getAge() + 1;
+        if (store == null) {
+            age = newAge;
+        }
+        else {
+            store.setAge(slot, newAge);
+        }
+        if(newAge > getSpecies().getMaxAge()) {
+            setDead(DeathCause.AGE);
         }
     }
 
     protected int getAge()
     {
-        return age;
+        return store == null ? age : store.getAge(slot);
     }
 
     /**
@@ -105,74 +174,98 @@ public abstract class Animal extends Actor {
      */
     protected void incrementHunger()
     {
-        foodLevel--;
-        if(foodLevel <= 0) {
-            setDead();
+        setFoodLevel(getFoodLevel() - 1);
+        if(getFoodLevel() <= 0) {
+            setDead(DeathCause.HUNGER);
         }
     }
 
     protected int getFoodLevel()
     {
-        return foodLevel;
+        return store == null ? foodLevel : store.getFoodLevel(slot);
+    }
+
+    private void setFoodLevel(int foodLevel)
+    {
+        if (store == null) {
+            this.foodLevel = foodLevel;
+        }
+        else {
+            store.setFoodLevel(slot, foodLevel);
+        }
+    }
+
+    boolean isDiseased()
+    {
+        return store == null ? diseased : store.isDiseased(slot);
+    }
+
+    void setDiseased(boolean diseased)
+    {
+        if (store == null) {
+            this.diseased = diseased;
+        }
+        else {
+            store.setDiseased(slot, diseased);
+        }
     }
 
     /**
-     * Find if there is a suitable breeding partner in an adjacent cell
+     * Find if there is a suitable breeding partner within 4 cells
      * @param field the field of animals to check
      * @return true if there is a suitable breeding partner
      */
     protected boolean isPartnerNearby(Field field)
     {
-        return field.findActor(getLocation(), 4, (actor) -> {
-            if (actor.getClass().equals(this.getClass())) {
-                Animal animal = (Animal) actor;
-                return animal.gender != this.gender && animal.state == AnimalState.BREEDING;
-            }
-            return false;
-        }) != null;
+        Gender partnerGender = gender == Gender.MALE ? Gender.FEMALE : Gender.MALE;
+        return field.hasBreedingPartner(getLocation(), 4, getSpecies(), partnerGender);
     }
 
     /**
-     * Get the location of food in an adjacent cell
+     * Get the location of food in an adjacent cell. Prey actors are looked
+     * for first, then plants in the field's vegetation layer.
      * @param field the field to check
-     * @return the location of suitable prey if there is any, else null
+     * @return the location of suitable prey or a plant if there is any, else null
      */
     protected Location findFood(Field field)
     {
-        return field.findActor(getLocation(), 1,
-                (a) -> canEat(a) && a.isActive());
+        int diet = getSpecies().getPreyMask();
+        Location food = null;
+        if ((diet & ~PLANT_MASK) != 0) {
+            food = field.findActor(getLocation(), 1,
+                    (a) -> canEat(a) && a.isActive());
+        }
+        if (food == null && (diet & PLANT_MASK) != 0) {
+            food = field.findPlant(getLocation(), 1);
+        }
+        return food;
     }
-    
-        /**
-     * Updates the disease status of the animal.
-     * - Introduces disease randomly based on NEW_DISEASE_CHANCE.
-     * - Spreads disease to nearby animals based on DISEASE_SPREAD probability.
-     * - Can cause death based on DISEASE_LETHALITY.
-     *
+
+    /**
+     * Eat the food at the given location: Edible prey standing there, or
+     * else the plant growing there.
      * @param currentField The current state of the field.
+     * @param foodLoc The location returned by findFood, or null.
+     * @return true if something was eaten
      */
-    private void updateDisease(Field currentField) {
-        if (!diseased) {
-            if (rand.nextDouble() < NEW_DISEASE_CHANCE) {
-                diseased = true;
-            }
+    private boolean eat(Field currentField, Location foodLoc)
+    {
+        if (foodLoc == null) {
+            return false;
         }
-        else {
-            List<Location> adjacent = currentField.getAdjacentLocations(location, 1);
-            for (Location loc : adjacent) {
-                Actor a = currentField.getActorAt(loc);
-                if (a instanceof Animal animal) {
-                    if (rand.nextDouble() < DISEASE_SPREAD) {
-                        animal.diseased = true;
-                    }
-                }
-            }
-            if (rand.nextDouble() < DISEASE_LETHALITY) {
-                setDead();
-            }
+        Actor actor = currentField.getActorAt(foodLoc);
+        if (actor instanceof Edible food && canEat(actor)) {
+            food.eat();
+            setFoodLevel(food.getFoodValue());
+            return true;
         }
+        if (getSpecies().canEat(Species.PLANT) && currentField.eatPlant(foodLoc)) {
+            setFoodLevel(Species.PLANT.getFoodValue());
+            return true;
+        }
+        return false;
     }
-
+    
     /**
      * Allows this Animal to act
      * @param currentField The current state of the field.
@@ -182,17 +275,30 @@ public abstract class Animal extends Actor {
     @Override
     public void act(Field currentField, Field nextFieldState, Environment env)
     {
-        incrementAge();
-        incrementHunger();
-        updateDisease(currentField);
+        if (store == null) {
+            incrementAge();
+            incrementHunger();
+        }
+        else if (store.isExpired(slot)) {
+            // The store has already aged us this step, and we are too old or hungry.
+            setDead(getAge() > getSpecies().getMaxAge() ? DeathCause.AGE : DeathCause.HUNGER);
+        }
         updateState(env);
-        switch(state) {
+        AnimalState acting = getState();
+        StepMetrics metrics = currentField.getMetrics();
+        long start = metrics == null ? 0 : System.nanoTime();
+        switch(acting) {
             case SLEEPING -> sleepAction(nextFieldState);
             case BREEDING -> breedAction(currentField, nextFieldState);
             case EATING -> eatAction(currentField, nextFieldState);
             case WANDERING -> wanderAction(currentField, nextFieldState);
             case EAT_AND_BREED -> eatAndBreed(currentField, nextFieldState);
-            case DEAD -> setDead();
+            case DEAD -> {
+                // Already dead: setDead was called with the cause.
+            }
+        }
+        if (metrics != null) {
+            metrics.actionTaken(acting, System.nanoTime() - start);
         }
     }
 
@@ -206,40 +312,47 @@ public abstract class Animal extends Actor {
      * @param nextFieldState The new state being built.
      */
     protected void eatAndBreed(Field currentField, Field nextFieldState) {
-        List<Location> freeLocations = nextFieldState.getFreeOrPlant(location, 1);
-        if (isPartnerNearby(currentField) && gender == Gender.FEMALE && rand.nextDouble() <= getBreedingProbability()) {
-            // New Animals are born into adjacent locations.
-            // Get a list of adjacent free locations.
-            int births = rand.nextInt(getMaxLitterSize()) + 1;
-            for (int b = 0; b < births && !freeLocations.isEmpty(); b++) {
-                Location loc = freeLocations.removeFirst();
-                Animal young = giveBirth(loc);
-                nextFieldState.placeActor(young, loc);
-            }
+        if (isPartnerNearby(currentField) && gender == Gender.FEMALE && Randomizer.getRandom().nextDouble() <= currentField.getParameters().getBreedingProbability(getSpecies())) {
+            giveBirths(currentField, nextFieldState);
         }
         // We want to eat, so we need to look for food
         Location foodLoc = findFood(currentField);
 
-        Location nextLoc = null;
-        Actor actor = currentField.getActorAt(foodLoc);
-        if (!(actor instanceof Edible food)) {
-            if (!freeLocations.isEmpty()) {
-                nextLoc = freeLocations.removeFirst();
-            }
-        } else {
-            food.eat();
-            foodLevel = food.getFoodValue();
+        Location nextLoc;
+        if (eat(currentField, foodLoc)) {
             nextLoc = foodLoc;
+        } else {
+            nextLoc = searchForFood(currentField, nextFieldState);
         }
         if (nextLoc != null) {
             setLocation(nextLoc);
             nextFieldState.placeActor(this, nextLoc);
         } else {
-            setDead();
+            setDead(DeathCause.OVERCROWDING);
         }
 
     }
     
+    /**
+     * Choose where to move when there was nothing to eat. Hunters follow
+     * the scent of their prey towards where it is strongest; anything else,
+     * or a hunter that cannot smell any prey, moves to a random free cell.
+     *
+     * @param currentField The current state of the field.
+     * @param nextFieldState The new state being built.
+     * @return The location to move to, or null if there is no free cell.
+     */
+    private Location searchForFood(Field currentField, Field nextFieldState) {
+        ScentMap scent = currentField.getScentMap();
+        if (scent != null && scent.tracks(getSpecies())) {
+            Location uphill = nextFieldState.getFreeLocationUpScent(location, 1, scent, getSpecies());
+            if (uphill != null) {
+                return uphill;
+            }
+        }
+        return nextFieldState.getRandomFreeLocation(location, 1);
+    }
+
     /**
      * Handles the sleep action for the animal.
      * - If another animal enters its location, it attempts to move.
@@ -254,15 +367,13 @@ public abstract class Animal extends Actor {
         if (nextFieldState.getActorAt(location) != null) {
             // Someone has entered our square so we try to move (otherwise we effectively kill them)
             // Maybe we are pushed by the other animal out of our square
-            List<Location> possibleLocs = nextFieldState.getFreeOrPlant(location, 1);
-            if (!possibleLocs.isEmpty()) {
-                nextLocation = possibleLocs.getFirst();
-            }
-            else {
+            nextLocation = nextFieldState.getRandomFreeLocation(location, 1);
+            if (nextLocation == null) {
                 // Overcrowding
-                setDead();
+                setDead(DeathCause.OVERCROWDING);
                 return;
             }
+            setLocation(nextLocation);
         }
         nextFieldState.placeActor(this, nextLocation);
     }
@@ -278,24 +389,16 @@ public abstract class Animal extends Actor {
      */
     protected void breedAction(Field currentField, Field nextFieldState)
     {
-        List<Location> freeLocations = nextFieldState.getFreeOrPlant(location, 1);
-        if (isPartnerNearby(currentField) && gender == Gender.FEMALE && rand.nextDouble() <= getBreedingProbability()) {
-            // New Animals are born into adjacent locations.
-            // Get a list of adjacent free locations.
-            int births = rand.nextInt(getMaxLitterSize()) + 1;
-            for (int b = 0; b < births && !freeLocations.isEmpty(); b++) {
-                Location loc = freeLocations.removeFirst();
-                Animal young = giveBirth(loc);
-                nextFieldState.placeActor(young, loc);
-            }
+        if (isPartnerNearby(currentField) && gender == Gender.FEMALE && Randomizer.getRandom().nextDouble() <= currentField.getParameters().getBreedingProbability(getSpecies())) {
+            giveBirths(currentField, nextFieldState);
         }
-        if (!freeLocations.isEmpty()) {
-            Location nextLoc = freeLocations.removeFirst();
+        Location nextLoc = nextFieldState.getRandomFreeLocation(location, 1);
+        if (nextLoc != null) {
             setLocation(nextLoc);
             nextFieldState.placeActor(this, nextLoc);
         } else {
             // Overcrowding
-            setDead();
+            setDead(DeathCause.OVERCROWDING);
         }
     }
 
@@ -304,24 +407,17 @@ public abstract class Animal extends Actor {
         // We want to eat, so we need to look for food
         Location foodLoc = findFood(currentField);
 
-        Location nextLoc = null;
-        Actor actor = currentField.getActorAt(foodLoc);
-        if (!(actor instanceof Edible food)) {
-            // FIXME: generate a random adjacent location without constructing the list of all adjacencies
-            List<Location> freeLocations = nextFieldState.getFreeOrPlant(location, 1);
-            if (!freeLocations.isEmpty()) {
-                nextLoc = freeLocations.removeFirst();
-            }
-        } else {
-            food.eat();
-            foodLevel = food.getFoodValue();
+        Location nextLoc;
+        if (eat(currentField, foodLoc)) {
             nextLoc = foodLoc;
+        } else {
+            nextLoc = searchForFood(currentField, nextFieldState);
         }
         if (nextLoc != null) {
             setLocation(nextLoc);
             nextFieldState.placeActor(this, nextLoc);
         } else {
-            setDead();
+            setDead(DeathCause.OVERCROWDING);
         }
     }
     
@@ -334,19 +430,48 @@ public abstract class Animal extends Actor {
      * @param nextFieldState The new state being built.
      */
     protected void wanderAction(Field currentField, Field nextFieldState) {
-        List<Location> freeLocations = nextFieldState.getFreeOrPlant(location, 1);
-        if (!freeLocations.isEmpty()) {
-            Location nextLoc = freeLocations.removeFirst();
+        Location nextLoc = nextFieldState.getRandomFreeLocation(location, 1);
+        if (nextLoc != null) {
             setLocation(nextLoc);
             nextFieldState.placeActor(this, nextLoc);
         } else {
-            setDead();
+            setDead(DeathCause.OVERCROWDING);
         }
 
     }
 
+    /**
+     * Places a random-sized litter of young into free cells around this animal.
+     * Stops early if there are no free cells left.
+     * @param currentField The current state of the field.
+     * @param nextFieldState The new state being built.
+     */
+    private void giveBirths(Field currentField, Field nextFieldState) {
+        // New Animals are born into adjacent locations.
+        int births = Randomizer.getRandom().nextInt(currentField.getParameters().getMaxLitterSize(getSpecies())) + 1;
+        int born = 0;
+        for (; born < births; born++) {
+            Location loc = nextFieldState.getRandomFreeLocation(location, 1);
+            if (loc == null) {
+                break;
+            }
+            Animal young = giveBirth(loc);
+            if (store != null) {
+                young.attachTo(store);
+            }
+            nextFieldState.placeActor(young, loc);
+        }
+        BirthEvent event = new BirthEvent();
+        if (event.shouldCommit()) {
+            event.species = getSpecies().toString();
+            event.young = born;
+            event.litterSize = births;
+            event.commit();
+        }
+    }
+
     protected boolean canBreed() {
-        return age > getBreedingAge();
+        return getAge() > getSpecies().getBreedingAge();
     }
 
     /**
@@ -360,7 +485,9 @@ public abstract class Animal extends Actor {
      * @param actor the actor to check
      * @return true if this animal can eat `actor`
      */
-    abstract boolean canEat(Actor actor);
+    protected boolean canEat(Actor actor) {
+        return getSpecies().canEat(actor.getSpecies());
+    }
 
     /**
      * Create a newborn version of this animal
@@ -0,0 +1,191 @@
+import java.util.Arrays;
+
+/**
+ * A data-oriented store for the changing state of animals. Instead of each
+ * Animal holding its own age, food level, state, gender and disease flag,
+ * the values live in parallel primitive arrays indexed by slot, so passes
+ * over every animal walk memory in order.
+ *
+ * An Animal that is attached to a store becomes a thin view over its slot.
+ * When it dies its values are copied back into the object and the slot is
+ * freed for reuse.
+ *
+ * The slots are kept in blocks of BLOCK_SIZE, allocated as the store fills
+ * up, so a store with room for every cell of a large field only pays for
+ * the animals it holds. The capacity is fixed, and a block is never moved
+ * once allocated, so the tiled engine's threads can use the slots while
+ * other animals are being attached.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class AnimalStore
+{
+    // The number of slots in a block is 1 << BLOCK_BITS.
+    private static final int BLOCK_BITS = 12;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    // The values of each slot of a block.
+    private static class Block
+    {
+        final int[] age = new int[BLOCK_SIZE];
+        final int[] foodLevel = new int[BLOCK_SIZE];
+        final int[] maxAge = new int[BLOCK_SIZE];
+        final byte[] state = new byte[BLOCK_SIZE];
+        final byte[] gender = new byte[BLOCK_SIZE];
+        final boolean[] diseased = new boolean[BLOCK_SIZE];
+        // Whether the last ageAndHunger pass found the animal too old or too hungry to live.
+        final boolean[] expired = new boolean[BLOCK_SIZE];
+        // Whether each slot holds an animal.
+        final boolean[] live = new boolean[BLOCK_SIZE];
+    }
+
+    // The most animals that can be attached at once.
+    private final int capacity;
+    // The blocks of slots, null until first used.
+    private final Block[] blocks;
+    // Slots below this have been used at least once.
+    private int used;
+    // Freed slots, ready for reuse.
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    // The states, indexed by the ordinal stored in a slot.
+    private static final AnimalState[] STATES = AnimalState.values();
+    private static final Gender[] GENDERS = Gender.values();
+
+    /**
+     * Create a store.
+     * @param capacity The most animals that can be attached at once.
+     */
+    public AnimalStore(int capacity)
+    {
+        this.capacity = capacity;
+        blocks = new Block[(capacity + BLOCK_MASK) >>> BLOCK_BITS];
+    }
+
+    /**
+     * Take a free slot and fill it with an animal's values.
+     * @return The slot the values were stored in.
+     */
+    synchronized int attach(int animalAge, int animalFoodLevel, int animalMaxAge,
+                            AnimalState animalState, Gender animalGender, boolean animalDiseased)
+    {
+        int slot;
+        if(freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        }
+        else if(used < capacity) {
+            slot = used++;
+            if(blocks[slot >>> BLOCK_BITS] == null) {
+                blocks[slot >>> BLOCK_BITS] = new Block();
+            }
+        }
+        else {
+            throw new IllegalStateException("Animal store is full (" + capacity + " slots)");
+        }
+        Block block = blocks[slot >>> BLOCK_BITS];
+        int n = slot & BLOCK_MASK;
+        block.age[n] = animalAge;
+        block.foodLevel[n] = animalFoodLevel;
+        block.maxAge[n] = animalMaxAge;
+        block.state[n] = (byte) animalState.ordinal();
+        block.gender[n] = (byte) animalGender.ordinal();
+        block.diseased[n] = animalDiseased;
+        block.expired[n] = false;
+        block.live[n] = true;
+        return slot;
+    }
+
+    /**
+     * Free a slot so that it can be reused.
+     * @param slot The slot to free.
+     */
+    synchronized void release(int slot)
+    {
+        blocks[slot >>> BLOCK_BITS].live[slot & BLOCK_MASK] = false;
+        if(freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Age every animal by one step and make it one step hungrier, recording
+     * which animals are now too old or too hungry to live. Attached animals
+     * do this here instead of one at a time in Animal.act.
+     */
+    public void ageAndHunger()
+    {
+        for(int first = 0; first < used; first += BLOCK_SIZE) {
+            Block block = blocks[first >>> BLOCK_BITS];
+            int last = Math.min(used - first, BLOCK_SIZE);
+            for(int n = 0; n < last; n++) {
+                if(block.live[n]) {
+                    int newAge = ++block.age[n];
+                    int newFoodLevel = --block.foodLevel[n];
+                    block.expired[n] = newAge > block.maxAge[n] || newFoodLevel <= 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of animals currently attached.
+     */
+    public synchronized int size()
+    {
+        return used - freeCount;
+    }
+
+    int getAge(int slot)
+    {
+        return blocks[slot >>> BLOCK_BITS].age[slot & BLOCK_MASK];
+    }
+
+    void setAge(int slot, int value)
+    {
+        blocks[slot >>> BLOCK_BITS].age[slot & BLOCK_MASK] = value;
+    }
+
+    int getFoodLevel(int slot)
+    {
+        return blocks[slot >>> BLOCK_BITS].foodLevel[slot & BLOCK_MASK];
+    }
+
+    void setFoodLevel(int slot, int value)
+    {
+        blocks[slot >>> BLOCK_BITS].foodLevel[slot & BLOCK_MASK] = value;
+    }
+
+    AnimalState getState(int slot)
+    {
+        return STATES[blocks[slot >>> BLOCK_BITS].state[slot & BLOCK_MASK]];
+    }
+
+    void setState(int slot, AnimalState value)
+    {
+        blocks[slot >>> BLOCK_BITS].state[slot & BLOCK_MASK] = (byte) value.ordinal();
+    }
+
+    Gender getGender(int slot)
+    {
+        return GENDERS[blocks[slot >>> BLOCK_BITS].gender[slot & BLOCK_MASK]];
+    }
+
+    boolean isDiseased(int slot)
+    {
+        return blocks[slot >>> BLOCK_BITS].diseased[slot & BLOCK_MASK];
+    }
+
+    void setDiseased(int slot, boolean value)
+    {
+        blocks[slot >>> BLOCK_BITS].diseased[slot & BLOCK_MASK] = value;
+    }
+
+    boolean isExpired(int slot)
+    {
+        return blocks[slot >>> BLOCK_BITS].expired[slot & BLOCK_MASK];
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Runs the simulation from the command line without a graphical view,
+ * as fast as it will go, then reports throughput and final populations.
+ * No AWT or Swing classes are loaded, so it runs on machines with no display.
+ * 
+ * Usage: java BatchRunner [depth] [width] [steps] [seed] [threads] [store] [csv]
+ * A thread count of 0 (the default) uses the serial step engine.
+ * Passing true for store keeps animal state in an AnimalStore.
+ * Giving a csv file records a row of statistics after every step.
+ *
+ * Running with -Dsavannah.metrics=N times every phase of each step and
+ * prints a summary every N steps. The timings are also readable through
+ * JMX as savannah:type=StepMetrics,name="batch", where they can be
+ * switched on and off while the run goes on.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class BatchRunner
+{
+    // Defaults used for any argument that is not given.
+    private static final int DEFAULT_DEPTH = 80;
+    private static final int DEFAULT_WIDTH = 120;
+    private static final int DEFAULT_STEPS = 4000;
+    private static final long DEFAULT_SEED = 1111;
+    private static final String USAGE =
+        "Usage: java BatchRunner [depth] [width] [steps] [seed] [threads] [store] [csv]";
+
+    /**
+     * Run a headless simulation.
+     * @param args depth, width, number of steps, random seed, thread count,
+     *             whether to use the animal store and the file to record
+     *             statistics in, all optional
+     */
+    public static void main(String[] args)
+    {
+        int depth, width, steps, threads;
+        long seed;
+        boolean useStore;
+        try {
+            if(args.length > 7) {
+                throw new IllegalArgumentException("Too many arguments");
+            }
+            depth = intArgument(args, 0, "depth", 1, DEFAULT_DEPTH);
+            width = intArgument(args, 1, "width", 1, DEFAULT_WIDTH);
+            steps = intArgument(args, 2, "steps", 1, DEFAULT_STEPS);
+            seed = args.length > 3 ? parseSeed(args[3]) : DEFAULT_SEED;
+            threads = intArgument(args, 4, "threads", 0, 0);
+            useStore = args.length > 5 && parseBoolean(args[5]);
+        }
+        catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        Path timeSeries = args.length > 6 ? Path.of(args[6]) : null;
+
+        Simulator sim = new Simulator(depth, width, true, seed);
+        sim.setThreads(threads);
+        sim.useAnimalStore(useStore);
+        StepMetrics metrics = sim.getMetrics();
+        metrics.register("batch");
+        int logEvery = Integer.getInteger("savannah.metrics", 0);
+        if(logEvery > 0) {
+            metrics.setLogEvery(logEvery);
+            metrics.setEnabled(true);
+        }
+
+        long start = System.nanoTime();
+        try {
+            if(timeSeries != null) {
+                sim.recordTimeSeries(timeSeries);
+            }
+            sim.simulate(steps);
+            sim.stopTimeSeries();
+        }
+        catch(IOException e) {
+            System.err.println("Could not record statistics: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Field field = sim.getField();
+        System.out.printf("Ran %d steps on a %dx%d field in %.2f s (%.1f steps/s)%n",
+                          sim.getStep(), field.getDepth(), field.getWidth(),
+                          seconds, sim.getStep() / seconds);
+        System.out.println("Population: " + new FieldStats().getPopulationDetails(field));
+    }
+
+    /**
+     * Read a whole-number argument, or its default if it is not given.
+     * @param args The command-line arguments.
+     * @param n The position of the argument.
+     * @param name The name of the argument, for the error message.
+     * @param min The smallest value allowed.
+     * @param fallback The value to use if the argument is not given.
+     * @return The value of the argument.
+     * @throws IllegalArgumentException If it is not a number of at least min.
+     */
+    private static int intArgument(String[] args, int n, String name, int min, int fallback)
+    {
+        if(args.length <= n) {
+            return fallback;
+        }
+        int value;
+        try {
+            value = Integer.parseInt(args[n]);
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number, not " + args[n]);
+        }
+        if(value < min) {
+            throw new IllegalArgumentException(name + " must be at least " + min + ", not " + value);
+        }
+        return value;
+    }
+
+    /**
+     * @return The seed given as an argument.
+     * @throws IllegalArgumentException If it is not a whole number.
+     */
+    private static long parseSeed(String arg)
+    {
+        try {
+            return Long.parseLong(arg);
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("seed must be a whole number, not " + arg);
+        }
+    }
+
+    /**
+     * @return The value of a true or false argument.
+     * @throws IllegalArgumentException If it is neither.
+     */
+    private static boolean parseBoolean(String arg)
+    {
+        if(!arg.equalsIgnoreCase("true") && !arg.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("store must be true or false, not " + arg);
+        }
+        return Boolean.parseBoolean(arg);
+    }
+}
@@ -0,0 +1,31 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for a litter: one event for all the young
+ * an animal gives birth to at once, rather than one per young.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+@Name("savannah.Birth")
+@Label("Birth")
+@Category("Savannah")
+@Description("A litter of young born into the field")
+@StackTrace(false)
+public class BirthEvent extends jdk.jfr.Event
+{
+    @Label("Species")
+    String species;
+
+    @Label("Young")
+    @Description("The number of young placed in the field")
+    int young;
+
+    @Label("Litter Size")
+    @Description("The number of young the litter would have had with enough free cells")
+    int litterSize;
+}
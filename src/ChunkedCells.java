@@ -0,0 +1,270 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * The actors of a field by cell, stored in square chunks of CHUNK_SIZE
+ * cells a side. A chunk is only allocated when an actor is first placed in
+ * it, so a large field that is mostly empty costs memory in proportion to
+ * the area its actors cover rather than to its size. Reads of a cell in an
+ * unallocated chunk simply find it empty, so queries that cross from one
+ * chunk into the next need no special handling.
+ *
+ * Each chunk also keeps the slot in the field's actor list of every
+ * occupant, and how many of its cells are occupied. A chunk that is still
+ * empty when the cells are next cleared is freed; one that had actors in
+ * it is emptied and kept, so a chunk on the edge of a population is not
+ * allocated afresh every step.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class ChunkedCells
+{
+    // The width and height of a chunk are 1 << CHUNK_BITS.
+    public static final int CHUNK_BITS = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Lets threads that place actors at once allocate a chunk only once.
+    private static final VarHandle CHUNKS = MethodHandles.arrayElementVarHandle(Actor[][].class);
+
+    private final int depth, width;
+    // The number of chunks across the field.
+    private final int chunksAcross;
+    // The occupant of each cell of each chunk, row by row within the chunk,
+    // with the chunks themselves row by row. null where no chunk has been
+    // allocated. The parts of a chunk are kept in separate arrays so that
+    // reading a cell costs only two loads.
+    private final Actor[][] chunks;
+    // The slot in the field's actor list of each occupant, allocated with the chunk.
+    private final int[][] slots;
+    // The number of cells of each chunk with an occupant.
+    private final int[] occupied;
+    // Working space for takeAll: the allocated chunks of one row of chunks.
+    private final int[] allocated;
+
+    /**
+     * Create empty cells for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public ChunkedCells(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        chunksAcross = chunksAcross(width);
+        chunks = new Actor[chunksDown(depth) * chunksAcross][];
+        slots = new int[chunks.length][];
+        occupied = new int[chunks.length];
+        allocated = new int[chunksAcross];
+    }
+
+    /**
+     * @return The actor in the given cell, or null if it is empty.
+     */
+    public Actor get(int row, int col)
+    {
+        Actor[] chunk = chunks[chunkOf(row, col)];
+        return chunk == null ? null : chunk[offset(row, col)];
+    }
+
+    /**
+     * Put an actor in a cell, along with its slot in the actor list.
+     */
+    void set(int row, int col, Actor anActor, int slot)
+    {
+        int n = chunkOf(row, col);
+        Actor[] chunk = allocate(n);
+        if(slots[n] == null) {
+            slots[n] = new int[CHUNK_SIZE * CHUNK_SIZE];
+        }
+        int offset = offset(row, col);
+        if(chunk[offset] == null) {
+            occupied[n]++;
+        }
+        chunk[offset] = anActor;
+        slots[n][offset] = slot;
+    }
+
+    /**
+     * Put an actor in a cell without keeping its slot or the chunk's count
+     * of occupied cells. Several threads may do this at once, as long as
+     * they write to different cells; takeAll must be called afterwards.
+     */
+    void setConcurrently(int row, int col, Actor anActor)
+    {
+        allocate(chunkOf(row, col))[offset(row, col)] = anActor;
+    }
+
+    /**
+     * @return The slot in the actor list of the occupant of a cell.
+     */
+    int getSlot(int row, int col)
+    {
+        return slots[chunkOf(row, col)][offset(row, col)];
+    }
+
+    /**
+     * Change the slot in the actor list of the occupant of a cell.
+     */
+    void setSlot(int row, int col, int slot)
+    {
+        slots[chunkOf(row, col)][offset(row, col)] = slot;
+    }
+
+    /**
+     * @return false if no actor has been placed in the given area since the
+     *         cells were last cleared; true if one may have been.
+     */
+    public boolean mayHaveActors(int firstRow, int firstCol, int lastRow, int lastCol)
+    {
+        for(int chunkRow = firstRow >>> CHUNK_BITS; chunkRow <= lastRow >>> CHUNK_BITS; chunkRow++) {
+            for(int chunkCol = firstCol >>> CHUNK_BITS; chunkCol <= lastCol >>> CHUNK_BITS; chunkCol++) {
+                if(occupied[chunkRow * chunksAcross + chunkCol] > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Receives the actors taken out of the cells by takeAll.
+     */
+    public interface Taker
+    {
+        /**
+         * @param anActor An actor taken out of its cell.
+         * @param row The row of its cell.
+         * @param col The column of its cell.
+         */
+        void take(Actor anActor, int row, int col);
+    }
+
+    /**
+     * Take every actor out of the cells, in row-major order, skipping the
+     * chunks that were never allocated. Each row of chunks is looked over
+     * once, so the cost does not grow with the rows of empty chunks.
+     * @param taker Called for each actor after its cell has been emptied.
+     */
+    void takeAll(Taker taker)
+    {
+        Arrays.fill(occupied, 0);
+        for(int chunkRowStart = 0; chunkRowStart < chunks.length; chunkRowStart += chunksAcross) {
+            int count = 0;
+            for(int chunkCol = 0; chunkCol < chunksAcross; chunkCol++) {
+                if(chunks[chunkRowStart + chunkCol] != null) {
+                    allocated[count++] = chunkCol;
+                }
+            }
+            if(count == 0) {
+                continue;
+            }
+            int firstRow = (chunkRowStart / chunksAcross) << CHUNK_BITS;
+            int lastRow = Math.min(firstRow + CHUNK_SIZE, depth);
+            for(int row = firstRow; row < lastRow; row++) {
+                int rowOffset = (row & CHUNK_MASK) << CHUNK_BITS;
+                for(int n = 0; n < count; n++) {
+                    int chunkCol = allocated[n];
+                    Actor[] chunk = chunks[chunkRowStart + chunkCol];
+                    int firstCol = chunkCol << CHUNK_BITS;
+                    int lastCol = Math.min(firstCol + CHUNK_SIZE, width);
+                    for(int col = firstCol; col < lastCol; col++) {
+                        int offset = rowOffset + (col & CHUNK_MASK);
+                        Actor anActor = chunk[offset];
+                        if(anActor != null) {
+                            chunk[offset] = null;
+                            taker.take(anActor, row, col);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Empty every cell. Chunks that had no actors since the last clear are
+     * freed; the rest are kept for reuse.
+     */
+    public void clear()
+    {
+        for(int n = 0; n < chunks.length; n++) {
+            if(chunks[n] == null) {
+                continue;
+            }
+            if(occupied[n] == 0) {
+                chunks[n] = null;
+                slots[n] = null;
+            }
+            else {
+                Arrays.fill(chunks[n], null);
+                occupied[n] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return The number of chunks allocated.
+     */
+    public int getChunkCount()
+    {
+        int count = 0;
+        for(Actor[] chunk : chunks) {
+            if(chunk != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The chunk with the given number, allocating it if need be.
+     */
+    private Actor[] allocate(int n)
+    {
+        Actor[] chunk = chunks[n];
+        if(chunk == null) {
+            Actor[] fresh = new Actor[CHUNK_SIZE * CHUNK_SIZE];
+            chunk = (Actor[]) CHUNKS.compareAndExchange(chunks, n, (Actor[]) null, fresh);
+            if(chunk == null) {
+                chunk = fresh;
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * @return The number of the chunk holding a cell.
+     */
+    private int chunkOf(int row, int col)
+    {
+        return (row >>> CHUNK_BITS) * chunksAcross + (col >>> CHUNK_BITS);
+    }
+
+    /**
+     * @return The number of chunks across a field of the given width. The
+     *         other layers of a field that are stored by chunk use the same
+     *         chunks, numbered row by row.
+     */
+    static int chunksAcross(int width)
+    {
+        return (width + CHUNK_MASK) >>> CHUNK_BITS;
+    }
+
+    /**
+     * @return The number of chunks down a field of the given depth.
+     */
+    static int chunksDown(int depth)
+    {
+        return (depth + CHUNK_MASK) >>> CHUNK_BITS;
+    }
+
+    /**
+     * @return The position of a cell within its chunk.
+     */
+    static int offset(int row, int col)
+    {
+        return ((row & CHUNK_MASK) << CHUNK_BITS) | (col & CHUNK_MASK);
+    }
+}
@@ -49,6 +49,15 @@ public class Counter
         count++;
     }
     
+    /**
+     * Increase the current count by the given amount.
+     * @param amount How many to add.
+     */
+    public void increment(int amount)
+    {
+        count += amount;
+    }
+
     /**
      * Reset the current count to zero.
      */
@@ -0,0 +1,20 @@
+/**
+ * What an animal died of.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public enum DeathCause
+{
+    // It outlived the maximum age of its species.
+    AGE,
+    // It ran out of food.
+    HUNGER,
+    // The disease killed it.
+    DISEASE,
+    // There was no free cell around it to move into, or another animal
+    // was put in its cell.
+    OVERCROWDING,
+    // A predator ate it.
+    EATEN;
+}
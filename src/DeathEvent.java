@@ -0,0 +1,29 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for the death of an animal, with its cause.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+@Name("savannah.Death")
+@Label("Death")
+@Category("Savannah")
+@Description("An animal died")
+@StackTrace(false)
+public class DeathEvent extends jdk.jfr.Event
+{
+    @Label("Species")
+    String species;
+
+    @Label("Cause")
+    String cause;
+
+    @Label("Age")
+    @Description("The age of the animal, in hours")
+    int age;
+}
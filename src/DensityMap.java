@@ -0,0 +1,141 @@
+import java.util.Arrays;
+
+/**
+ * Maps of the animals that are ready to breed, one map per species and
+ * gender, with a bit for each cell holding such an animal. The number of
+ * matching animals in a rectangle of the field comes from counting the bits
+ * of a word per row, so the small areas animals look around for partners
+ * are counted 64 cells at a time.
+ *
+ * The bits are kept in the same square chunks as the field's actors (see
+ * ChunkedCells), one word per row of a chunk, and a chunk is only allocated
+ * where there is an animal ready to breed. The maps are built once per step
+ * from the field as it stands before anyone acts, so every animal sees the
+ * same partners whatever order the animals act in. Maps are only kept for
+ * the species and genders that have an animal ready to breed; the others
+ * are known to be empty.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class DensityMap
+{
+    private static final Gender[] GENDERS = Gender.values();
+    // The number of maps, indexed by species id * 2 + gender ordinal.
+    private static final int MAPS = Species.COUNT * GENDERS.length;
+    // The rows of a chunk, each held in one word of each map.
+    private static final int ROWS = ChunkedCells.CHUNK_SIZE;
+
+    private final int depth, width;
+    // The number of chunks across the field.
+    private final int chunksAcross;
+    // The bits of every map in each chunk: map m holds row r of the chunk
+    // in word m * ROWS + r. null where no animal is ready to breed.
+    private final long[][] chunks;
+    // The chunks allocated by the last build, which the next one frees.
+    private int[] allocated = new int[16];
+    private int allocatedCount;
+    // Whether each map holds anything this step.
+    private final boolean[] used = new boolean[MAPS];
+
+    /**
+     * Create the maps for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public DensityMap(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        chunksAcross = ChunkedCells.chunksAcross(width);
+        chunks = new long[chunksAcross * ChunkedCells.chunksDown(depth)][];
+    }
+
+    /**
+     * Rebuild the maps from the animals in a field that are ready to breed.
+     * @param field The field to count, of the size given when the map was created.
+     */
+    public void build(Field field)
+    {
+        Arrays.fill(used, false);
+        for(int n = 0; n < allocatedCount; n++) {
+            chunks[allocated[n]] = null;
+        }
+        allocatedCount = 0;
+        for(Actor actor : field.getActors()) {
+            if(actor instanceof Animal animal && animal.isActive()
+                    && animal.getState() == AnimalState.BREEDING) {
+                int map = mapOf(animal.getSpecies(), animal.getGender());
+                used[map] = true;
+                Location location = animal.getLocation();
+                int row = location.row();
+                int col = location.col();
+                chunk(chunkOf(row, col))[map * ROWS + (row & (ROWS - 1))] |= 1L << col;
+            }
+        }
+    }
+
+    /**
+     * @param species The species to look for.
+     * @param gender The gender to look for.
+     * @param row The row of the centre cell.
+     * @param col The column of the centre cell.
+     * @param range How far from the centre to look, in each direction.
+     * @return The number of animals of that species and gender that were
+     *         ready to breed within range of the cell (including the cell itself).
+     */
+    public int count(Species species, Gender gender, int row, int col, int range)
+    {
+        int map = mapOf(species, gender);
+        if(!used[map]) {
+            return 0;
+        }
+        int top = Math.max(row - range, 0);
+        int left = Math.max(col - range, 0);
+        int bottom = Math.min(row + range, depth - 1);
+        int right = Math.min(col + range, width - 1);
+        int count = 0;
+        for(int chunkCol = left >>> ChunkedCells.CHUNK_BITS;
+                chunkCol <= right >>> ChunkedCells.CHUNK_BITS; chunkCol++) {
+            // The columns of the rectangle that lie in this column of chunks.
+            int firstCol = Math.max(left, chunkCol << ChunkedCells.CHUNK_BITS);
+            int lastCol = Math.min(right, (chunkCol << ChunkedCells.CHUNK_BITS) + ROWS - 1);
+            long mask = (-1L >>> (63 - (lastCol - firstCol))) << firstCol;
+            for(int r = top; r <= bottom; r++) {
+                long[] chunk = chunks[(r >>> ChunkedCells.CHUNK_BITS) * chunksAcross + chunkCol];
+                if(chunk != null) {
+                    count += Long.bitCount(chunk[map * ROWS + (r & (ROWS - 1))] & mask);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The chunk with the given number, allocating it if need be.
+     */
+    private long[] chunk(int n)
+    {
+        if(chunks[n] == null) {
+            chunks[n] = new long[MAPS * ROWS];
+            if(allocatedCount == allocated.length) {
+                allocated = Arrays.copyOf(allocated, allocatedCount * 2);
+            }
+            allocated[allocatedCount++] = n;
+        }
+        return chunks[n];
+    }
+
+    /**
+     * @return The number of the chunk holding a cell.
+     */
+    private int chunkOf(int row, int col)
+    {
+        return (row >>> ChunkedCells.CHUNK_BITS) * chunksAcross + (col >>> ChunkedCells.CHUNK_BITS);
+    }
+
+    private static int mapOf(Species species, Gender gender)
+    {
+        return species.getId() * GENDERS.length + gender.ordinal();
+    }
+}
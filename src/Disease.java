@@ -0,0 +1,244 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Spreads disease through the animals of a field as a phase of its own,
+ * run once per step before anyone acts.
+ *
+ * The phase first marks, in a compact grid with a byte per cell, which
+ * animals were diseased when it began. Like the field's actors, the grids
+ * are kept in chunks (see ChunkedCells), which are only allocated where the
+ * field has actors. Every animal then makes one draw
+ * against the marks around it: a healthy animal catches the disease with
+ * the chance that at least one of its k diseased neighbours passes it on,
+ * 1 - (1 - spread)^k, or from nowhere with NEW_DISEASE_CHANCE, and
+ * a diseased animal dies with DISEASE_LETHALITY. The outcomes are written
+ * to a second grid and only applied to the animals once every draw has
+ * been made, so no animal sees a neighbour's new state and the order the
+ * animals are visited in does not matter.
+ *
+ * The field is visited in bands of BAND_ROWS rows, each with its own
+ * random stream under the step's seed, so the bands can be rolled on
+ * several threads and still give the same result. Within a band, the
+ * chunks with actors are visited from left to right.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class Disease
+{
+    // The chance a diseased animal dies in a step.
+    public static final double DISEASE_LETHALITY = 0.2;
+    // The chance a diseased animal passes the disease to each neighbour in a step.
+    public static final double DISEASE_SPREAD = 0.1;
+    // The chance a healthy animal gets a new disease in a step.
+    public static final double NEW_DISEASE_CHANCE = 0.00001;
+    // The number of rows in each band.
+    private static final int BAND_ROWS = 32;
+
+    // What happens to the animal in a cell.
+    private static final byte UNCHANGED = 0;
+    private static final byte INFECTED = 1;
+    private static final byte KILLED = 2;
+
+    private final int depth, width;
+    // The number of chunks across the field.
+    private final int chunksAcross;
+    // 1 for each cell holding an animal that was diseased when the phase
+    // began, by chunk. null for chunks with no actors.
+    private final byte[][] sick;
+    // The outcome for the animal in each cell, by chunk. null for chunks
+    // with no actors.
+    private final byte[][] outcome;
+    // The chance of catching the disease with each number of diseased neighbours.
+    private final double[] catchChance = new double[9];
+
+    /**
+     * Create the grids for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public Disease(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        chunksAcross = ChunkedCells.chunksAcross(width);
+        int chunks = chunksAcross * ChunkedCells.chunksDown(depth);
+        sick = new byte[chunks][];
+        outcome = new byte[chunks][];
+        fillCatchChance(DISEASE_SPREAD);
+    }
+
+    /**
+     * Set how readily the disease spreads from now on.
+     * @param spread The chance a diseased animal passes the disease to each
+     *               neighbour in a step.
+     */
+    public void setSpread(double spread)
+    {
+        fillCatchChance(spread);
+    }
+
+    /**
+     * Work out the chance of catching the disease with each number of
+     * diseased neighbours.
+     * @param spread The chance a diseased animal passes the disease to each
+     *               neighbour in a step.
+     */
+    private void fillCatchChance(double spread)
+    {
+        for(int k = 0; k < catchChance.length; k++) {
+            double escape = (1 - NEW_DISEASE_CHANCE) * Math.pow(1 - spread, k);
+            catchChance[k] = 1 - escape;
+        }
+    }
+
+    /**
+     * Run the disease phase over the animals of a field.
+     * @param field The current state of the field.
+     * @param seed The seed the bands' random streams are derived from.
+     * @param stepper The engine to roll the bands on, or null to roll them
+     *                on the calling thread.
+     */
+    public void spread(Field field, long seed, TiledStepper stepper)
+    {
+        allocateChunks(field);
+        for(Actor actor : field.getActors()) {
+            if(actor instanceof Animal animal && animal.isActive() && animal.isDiseased()) {
+                Location location = animal.getLocation();
+                int chunk = chunkOf(location.row(), location.col());
+                if(sick[chunk] == null) {
+                    sick[chunk] = new byte[ChunkedCells.CHUNK_SIZE * ChunkedCells.CHUNK_SIZE];
+                }
+                sick[chunk][ChunkedCells.offset(location.row(), location.col())] = 1;
+            }
+        }
+
+        int bands = (depth + BAND_ROWS - 1) / BAND_ROWS;
+        if(stepper != null) {
+            stepper.runBands(bands, (band) -> rollBand(field, band, Randomizer.stream(seed, band)));
+        }
+        else {
+            for(int band = 0; band < bands; band++) {
+                rollBand(field, band, Randomizer.stream(seed, band));
+            }
+        }
+
+        for(Actor actor : field.getActors()) {
+            if(actor instanceof Animal animal && animal.isActive()) {
+                Location location = animal.getLocation();
+                int chunk = chunkOf(location.row(), location.col());
+                int offset = ChunkedCells.offset(location.row(), location.col());
+                if(sick[chunk] != null) {
+                    sick[chunk][offset] = 0;
+                }
+                if(outcome[chunk][offset] == INFECTED) {
+                    animal.setDiseased(true);
+                }
+                else if(outcome[chunk][offset] == KILLED) {
+                    animal.setDead(DeathCause.DISEASE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Make sure each chunk of the field with actors has an outcome grid,
+     * before the bands are rolled on other threads, and free the grids of
+     * chunks with no actors.
+     */
+    private void allocateChunks(Field field)
+    {
+        for(int chunk = 0; chunk < outcome.length; chunk++) {
+            int firstRow = chunk / chunksAcross * ChunkedCells.CHUNK_SIZE;
+            int firstCol = chunk % chunksAcross * ChunkedCells.CHUNK_SIZE;
+            if(field.mayHaveActors(firstRow, firstCol,
+                                   Math.min(firstRow + ChunkedCells.CHUNK_SIZE, depth) - 1,
+                                   Math.min(firstCol + ChunkedCells.CHUNK_SIZE, width) - 1)) {
+                if(outcome[chunk] == null) {
+                    outcome[chunk] = new byte[ChunkedCells.CHUNK_SIZE * ChunkedCells.CHUNK_SIZE];
+                }
+            }
+            else {
+                outcome[chunk] = null;
+                sick[chunk] = null;
+            }
+        }
+    }
+
+    /**
+     * Make the draw for every animal in one band of rows. Only reads the
+     * field and the sick grids, and only writes the band's outcomes.
+     */
+    private void rollBand(Field field, int band, RandomGenerator rand)
+    {
+        int firstRow = band * BAND_ROWS;
+        int lastRow = Math.min(firstRow + BAND_ROWS, depth);
+        int chunkRowStart = (firstRow >>> ChunkedCells.CHUNK_BITS) * chunksAcross;
+        for(int chunkCol = 0; chunkCol < chunksAcross; chunkCol++) {
+            // Outcomes are only read for cells with animals, so chunks
+            // with none need not be written.
+            byte[] outcomes = outcome[chunkRowStart + chunkCol];
+            if(outcomes == null) {
+                continue;
+            }
+            int firstCol = chunkCol * ChunkedCells.CHUNK_SIZE;
+            int lastCol = Math.min(firstCol + ChunkedCells.CHUNK_SIZE, width);
+            for(int row = firstRow; row < lastRow; row++) {
+                rollCells(field, outcomes, row, firstCol, lastCol, rand);
+            }
+        }
+    }
+
+    /**
+     * Make the draw for every animal in the part of a row in one chunk.
+     */
+    private void rollCells(Field field, byte[] outcomes, int row, int firstCol, int lastCol,
+                           RandomGenerator rand)
+    {
+        byte[] sickHere = sick[chunkOf(row, firstCol)];
+        for(int col = firstCol; col < lastCol; col++) {
+            int offset = ChunkedCells.offset(row, col);
+            Actor actor = field.getActorAt(row, col);
+            byte result = UNCHANGED;
+            if(actor instanceof Animal && actor.isActive()) {
+                if(sickHere != null && sickHere[offset] != 0) {
+                    if(rand.nextDouble() < DISEASE_LETHALITY) {
+                        result = KILLED;
+                    }
+                }
+                else if(rand.nextDouble() < catchChance[sickNeighbours(row, col)]) {
+                    result = INFECTED;
+                }
+            }
+            outcomes[offset] = result;
+        }
+    }
+
+    /**
+     * @return The number of the 8 cells around the given one that hold a diseased animal.
+     */
+    private int sickNeighbours(int row, int col)
+    {
+        int count = 0;
+        int lastRow = Math.min(row + 1, depth - 1);
+        int lastCol = Math.min(col + 1, width - 1);
+        for(int r = Math.max(row - 1, 0); r <= lastRow; r++) {
+            for(int c = Math.max(col - 1, 0); c <= lastCol; c++) {
+                byte[] chunk = sick[chunkOf(r, c)];
+                if(chunk != null) {
+                    count += chunk[ChunkedCells.offset(r, c)];
+                }
+            }
+        }
+        // The cell itself is healthy, so it adds nothing.
+        return count;
+    }
+
+    /**
+     * @return The number of the chunk holding a cell.
+     */
+    private int chunkOf(int row, int col)
+    {
+        return (row >>> ChunkedCells.CHUNK_BITS) * chunksAcross + (col >>> ChunkedCells.CHUNK_BITS);
+    }
+}
@@ -1,5 +1,6 @@
 /**
- * Interface for edible actors (prey and plants)
+ * Interface for edible actors (prey). Plants are not actors: they live in
+ * the field's vegetation layer and are eaten with Field.eatPlant.
  * @author Keiran Matthews & Tanjim Islam
  * @version 1.0.0 
  */
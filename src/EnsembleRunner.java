@@ -0,0 +1,351 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs an ensemble of independent headless simulations of the same size
+ * at once, and reports the mean and variance of every population across
+ * the runs, step by step.
+ *
+ * Each run is a Simulator of its own with a seed derived from the
+ * ensemble's seed and the number of the run, stepped serially on one
+ * thread of a pool of a bounded size. A run shares no state with the
+ * others: every random draw it makes comes from streams derived from its
+ * own seed, so a run gives the same populations whether it is run in an
+ * ensemble, alone, or on any number of threads.
+ *
+ * Each run is taken through every step by one worker, noting its counts
+ * as it goes, and then dropped, so no more runs are in memory at once than
+ * there are threads in the pool. Its counts are then folded into running
+ * statistics for every step (Welford's method). The runs are folded in
+ * order of their number, a run that finishes early waiting for the runs
+ * before it, so the statistics do not depend on the number of threads.
+ * Only the statistics of every step and the counts of the runs waiting to
+ * be folded are kept. The steps are reported once every run is folded.
+ *
+ * Usage: java EnsembleRunner [depth] [width] [steps] [runs] [seed] [threads]
+ * A CSV row of the mean and variance of each species is printed for every
+ * step, from step 0 (the populations as first placed) on. The number of
+ * threads defaults to the number of processors.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class EnsembleRunner
+{
+    // Defaults used for any argument that is not given.
+    private static final int DEFAULT_DEPTH = 80;
+    private static final int DEFAULT_WIDTH = 120;
+    private static final int DEFAULT_STEPS = 500;
+    private static final int DEFAULT_RUNS = 16;
+    private static final long DEFAULT_SEED = 1111;
+    private static final String USAGE =
+        "Usage: java EnsembleRunner [depth] [width] [steps] [runs] [seed] [threads]";
+
+    private final int depth, width, steps;
+
+    /**
+     * The mean and variance of the count of every species across the runs
+     * of an ensemble, at the end of one step.
+     */
+    public static class StepSummary
+    {
+        private final int step;
+        private int runs;
+        private final double[] mean = new double[Species.COUNT];
+        // The sum of squared differences from the mean of each species.
+        private final double[] squares = new double[Species.COUNT];
+
+        private StepSummary(int step)
+        {
+            this.step = step;
+        }
+
+        /**
+         * Add the counts of one more run, by Welford's method.
+         */
+        private void add(int[] counts)
+        {
+            runs++;
+            for(int id = 0; id < Species.COUNT; id++) {
+                double delta = counts[id] - mean[id];
+                mean[id] += delta / runs;
+                squares[id] += delta * (counts[id] - mean[id]);
+            }
+        }
+
+        /**
+         * @return The number of the step.
+         */
+        public int getStep()
+        {
+            return step;
+        }
+
+        /**
+         * @return The number of runs the statistics are taken over.
+         */
+        public int getRuns()
+        {
+            return runs;
+        }
+
+        /**
+         * @return The mean count of a species across the runs.
+         */
+        public double getMean(Species species)
+        {
+            return mean[species.getId()];
+        }
+
+        /**
+         * @return The sample variance of the count of a species across the
+         *         runs, or 0 if there was only one run.
+         */
+        public double getVariance(Species species)
+        {
+            return runs < 2 ? 0 : squares[species.getId()] / (runs - 1);
+        }
+    }
+
+    /**
+     * The statistics of every step of an ensemble, which the runs' counts
+     * are folded into one run at a time, in order of run.
+     */
+    private static class Fold
+    {
+        private final StepSummary[] summaries;
+        // The run to be folded next.
+        private int nextRun;
+        // Set when a run has failed, so the runs after it stop waiting.
+        private boolean failed;
+
+        private Fold(int steps)
+        {
+            summaries = new StepSummary[steps + 1];
+            for(int step = 0; step <= steps; step++) {
+                summaries[step] = new StepSummary(step);
+            }
+        }
+
+        /**
+         * Fold in the counts of a run, once every run before it is folded.
+         * @param run The number of the run.
+         * @param counts The counts of the run, by step and species id.
+         * @throws InterruptedException If interrupted while waiting.
+         */
+        private synchronized void add(int run, int[][] counts) throws InterruptedException
+        {
+            while(nextRun != run && !failed) {
+                wait();
+            }
+            if(failed) {
+                throw new IllegalStateException("An earlier run of the ensemble failed");
+            }
+            for(int step = 0; step < summaries.length; step++) {
+                summaries[step].add(counts[step]);
+            }
+            nextRun++;
+            notifyAll();
+        }
+
+        /**
+         * Stop every run waiting to be folded.
+         */
+        private synchronized void fail()
+        {
+            failed = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Create a runner for ensembles of simulations of the given size.
+     * @param depth The depth of each field.
+     * @param width The width of each field.
+     * @param steps The number of steps every run is taken through.
+     */
+    public EnsembleRunner(int depth, int width, int steps)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+    }
+
+    /**
+     * Run an ensemble and wait for every run to finish. Every run is taken
+     * through all the steps, even once it has died out, so that each step
+     * is reported over the same number of runs.
+     * @param runs The number of runs.
+     * @param seed The seed the seeds of the runs are derived from.
+     * @param threads The number of runs to step at once.
+     * @param listener Given the statistics of each step, in order, once
+     *                 every run has finished. Called on the thread that
+     *                 called this method; the summary may be kept.
+     */
+    public void run(int runs, long seed, int threads, Consumer<StepSummary> listener)
+    {
+        if(runs < 1 || threads < 1) {
+            throw new IllegalArgumentException("Need at least one run and one thread");
+        }
+        Fold fold = new Fold(steps);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(int run = 0; run < runs; run++) {
+            int number = run;
+            long runSeed = Randomizer.deriveSeed(seed, run);
+            tasks.add(() -> {
+                try {
+                    fold.add(number, runOne(runSeed));
+                }
+                catch(RuntimeException | Error e) {
+                    fold.fail();
+                    throw e;
+                }
+                return null;
+            });
+        }
+        // The runs are started in order, so a run waiting to be folded only
+        // ever waits for runs that are already running.
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, runs), (task) -> {
+            Thread thread = new Thread(task, "ensemble-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for(Future<Void> result : pool.invokeAll(tasks)) {
+                result.get();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the ensemble", e);
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException("A run of the ensemble failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        for(StepSummary summary : fold.summaries) {
+            listener.accept(summary);
+        }
+    }
+
+    /**
+     * Take one run through every step.
+     * @param seed The seed of the run.
+     * @return The counts of the run, by step and species id, from step 0,
+     *         the field as first placed.
+     */
+    private int[][] runOne(long seed)
+    {
+        Simulator sim = new Simulator(depth, width, true, seed);
+        int[][] counts = new int[steps + 1][Species.COUNT];
+        for(int step = 0; step <= steps; step++) {
+            if(step > 0) {
+                sim.simulateOneStep();
+            }
+            Field field = sim.getField();
+            for(int id = 0; id < Species.COUNT; id++) {
+                counts[step][id] = field.getCount(Species.byId(id));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Run an ensemble from the command line and print its statistics.
+     * @param args depth, width, number of steps, number of runs, random seed
+     *             and thread count, all optional
+     */
+    public static void main(String[] args)
+    {
+        int depth, width, steps, runs, threads;
+        long seed;
+        try {
+            if(args.length > 6) {
+                throw new IllegalArgumentException("Too many arguments");
+            }
+            depth = intArgument(args, 0, "depth", 1, DEFAULT_DEPTH);
+            width = intArgument(args, 1, "width", 1, DEFAULT_WIDTH);
+            steps = intArgument(args, 2, "steps", 1, DEFAULT_STEPS);
+            runs = intArgument(args, 3, "runs", 1, DEFAULT_RUNS);
+            seed = args.length > 4 ? parseSeed(args[4]) : DEFAULT_SEED;
+            threads = intArgument(args, 5, "threads", 1, Runtime.getRuntime().availableProcessors());
+        }
+        catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        StringBuilder header = new StringBuilder("step");
+        for(int id = 0; id < Species.COUNT; id++) {
+            Species species = Species.byId(id);
+            header.append(',').append(species).append("_mean,").append(species).append("_variance");
+        }
+        System.out.println(header);
+
+        long start = System.nanoTime();
+        new EnsembleRunner(depth, width, steps).run(runs, seed, threads, (summary) -> {
+            StringBuilder line = new StringBuilder().append(summary.getStep());
+            for(int id = 0; id < Species.COUNT; id++) {
+                Species species = Species.byId(id);
+                line.append(',').append(String.format("%.3f", summary.getMean(species)))
+                    .append(',').append(String.format("%.3f", summary.getVariance(species)));
+            }
+            System.out.println(line);
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Ran %d runs of %d steps on a %dx%d field in %.2f s on %d threads%n",
+                          runs, steps, depth, width, seconds, Math.min(threads, runs));
+    }
+
+    /**
+     * Read a whole-number argument, or its default if it is not given.
+     * @param args The command-line arguments.
+     * @param n The position of the argument.
+     * @param name The name of the argument, for the error message.
+     * @param min The smallest value allowed.
+     * @param fallback The value to use if the argument is not given.
+     * @return The value of the argument.
+     * @throws IllegalArgumentException If it is not a number of at least min.
+     */
+    private static int intArgument(String[] args, int n, String name, int min, int fallback)
+    {
+        if(args.length <= n) {
+            return fallback;
+        }
+        int value;
+        try {
+            value = Integer.parseInt(args[n]);
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number, not " + args[n]);
+        }
+        if(value < min) {
+            throw new IllegalArgumentException(name + " must be at least " + min + ", not " + value);
+        }
+        return value;
+    }
+
+    /**
+     * @return The seed given as an argument.
+     * @throws IllegalArgumentException If it is not a whole number.
+     */
+    private static long parseSeed(String arg)
+    {
+        try {
+            return Long.parseLong(arg);
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("seed must be a whole number, not " + arg);
+        }
+    }
+}
@@ -1,20 +1,40 @@
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class Environment {
     private int time; // Time in hours from start of simulation
     private Weather weather;
-    private static final Random rand = new Random();
+    private final long seed; // Seed the weather for each hour is drawn from
     private static final double WEATHER_CHANCE = 0.2;
 
-    public Environment() {
+    /**
+     * Creates an environment starting at hour 0 in sunny weather.
+     * @param seed The seed for the weather. The weather for each hour
+     *             comes from its own stream under this seed.
+     */
+    public Environment(long seed) {
+        this.seed = seed;
         time = 0;
         weather = Weather.SUNNY;
     }
 
+    /**
+     * Creates an environment at a given time and weather, such as one
+     * saved in a snapshot.
+     * @param seed The seed for the weather.
+     * @param time The time in hours from the start of the simulation.
+     * @param weather The current weather.
+     */
+    public Environment(long seed, int time, Weather weather) {
+        this.seed = seed;
+        this.time = time;
+        this.weather = weather;
+    }
+
     public void incrementTime() {
         time++;
+        RandomGenerator rand = Randomizer.stream(seed, time);
         if (rand.nextDouble() < WEATHER_CHANCE){
-            weather = getNewWeather(time % 24);
+            weather = getNewWeather(time % 24, rand);
         }
     }
 
@@ -34,9 +54,10 @@ public class Environment {
     /**
      *
      * Adjusts weather based on previous weather condition's
+     * @param rand The random stream for the current hour
      * @return condition of new current weather
      */
-    private Weather getNewWeather(int hour){
+    private Weather getNewWeather(int hour, RandomGenerator rand){
         if (weather == Weather.STORMY && rand.nextDouble() < 0.8){
             return Weather.RAINY;
         }
@@ -52,6 +73,13 @@ public class Environment {
         return Weather.values()[rand.nextInt(Weather.values().length)];
     }
 
+    /**
+     * @return How much faster plants spread in the current weather than when dry.
+     */
+    public double getRainMultiplier(){
+        return weather == Weather.RAINY || weather == Weather.STORMY ? 2.0 : 1.0;
+    }
+
     public Weather getWeather(){
         return weather;
     }
@@ -1,25 +1,68 @@
 import java.util.*;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
 
 /**
  * Represent a rectangular grid of field positions.
- * Each position is able to store a single Actor/object.
+ * Each position is able to store a single Actor/object, and may also
+ * have a plant growing in it.
+ * A position can be addressed by Location, by (row, col) or by its cell
+ * index (row * width + col), which is a long so that fields of more than
+ * 2^31 cells can be addressed. The actors and plants are stored in chunks
+ * that are only allocated where they are (see ChunkedCells), so a large
+ * field that is mostly empty does not pay for its empty cells.
+ * 
+ * The simulator reuses two fields in turn, clearing one and building the
+ * next step into it. Code that reads a field (such as SimulatorView and
+ * FieldStats) may only use it until the simulator's next step and must not
+ * keep references to the field or its actor list.
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
  */
 public class Field
 {
-    // A random number generator for providing random locations.
-    private static final Random rand = Randomizer.getRandom();
+    // Occupants an animal may move on top of.
+    private static final Predicate<Actor> FREE = (actor) -> !actor.isActive();
     
     // The dimensions of the field.
     private final int depth, width;
-    // actors mapped by location.
-    private final Map<Location, Actor> field = new HashMap<>();
-    // The actors.
-    private final List<Actor> actors = new ArrayList<>();
+    // The actors by cell, with the slot each was given in actors.
+    private final ChunkedCells cells;
+    // The actors, in the order they were placed. An actor that is
+    // overwritten leaves a null hole, which compactActors closes up.
+    private Actor[] actors = new Actor[16];
+    // The cell each entry of actors was placed in.
+    private long[] actorCells = new long[16];
+    // The number of entries used in actors, and how many are holes.
+    private int actorCount, holes;
+    // The number of active actors of each species in the field, by species id.
+    private final int[] counts = new int[Species.COUNT];
+    // Whether several threads are placing actors at once, in which case
+    // only the cells are written and the rest is rebuilt afterwards.
+    private boolean concurrent;
+    // Whether an actor has been placed since beginConcurrentUpdates.
+    private boolean placedConcurrently;
+    // The plants, one bit per cell. Plants lie under the actors rather than
+    // taking up cells of their own.
+    private final Vegetation vegetation;
+    // The breeding animals of this field, counted before the step began,
+    // or null to look for partners cell by cell.
+    private DensityMap densityMap;
+    // The scent of prey in this field before the step began, or null.
+    private ScentMap scentMap;
+    // Where the actors of this step report their actions, or null.
+    private StepMetrics metrics;
+    // The traits the actors of this field breed with. Kept when cleared.
+    private Parameters parameters = Parameters.DEFAULTS;
+    // The cells whose contents differ from the field of the step before,
+    // and how many there are, or -1 if they have not been recorded. Both
+    // arrays are only allocated once changes are first recorded.
+    private int[] changedCells;
+    private int changedCount = -1;
+    // The stamp each cell was last added to changedCells with, so no cell is added twice.
+    private int[] changeStamps;
+    private int stamp;
 
     /**
      * Represent a field of the given dimensions.
@@ -30,6 +73,8 @@ public class Field
     {
         this.depth = depth;
         this.width = width;
+        this.cells = new ChunkedCells(depth, width);
+        this.vegetation = new Vegetation(depth, width);
     }
 
     /**
@@ -45,12 +90,171 @@ public class Field
             System.err.println("Tried to place actor at null");
             return;
         }
-        Object other = field.get(location);
+        placeActor(anActor, location.row(), location.col());
+    }
+
+    /**
+     * Place an Actor at the given row and column.
+     * If there is already an Actor at the position it will
+     * be lost.
+     * @param anActor The Actor to be placed.
+     * @param row The row to place the Actor in.
+     * @param col The column to place the Actor in.
+     */
+    public void placeActor(Actor anActor, int row, int col)
+    {
+        Actor other = cells.get(row, col);
+        if(other != null && other != anActor && other.isActive()) {
+            // The actor underneath is lost, which also takes it off the counts.
+            other.displaced();
+        }
+        if(concurrent) {
+            cells.setConcurrently(row, col, anActor);
+            anActor.setField(this);
+            placedConcurrently = true;
+            return;
+        }
         if(other != null) {
-            actors.remove(other);
+            // Leave a hole rather than shifting the rest of the actors down.
+            actors[cells.getSlot(row, col)] = null;
+            holes++;
+        }
+        if(actorCount == actors.length) {
+            actors = Arrays.copyOf(actors, actorCount * 2);
+            actorCells = Arrays.copyOf(actorCells, actorCount * 2);
+        }
+        cells.set(row, col, anActor, actorCount);
+        actors[actorCount] = anActor;
+        actorCells[actorCount] = getIndex(row, col);
+        actorCount++;
+        anActor.setField(this);
+        if(anActor.isActive()) {
+            counts[anActor.getSpecies().getId()]++;
+        }
+    }
+
+    /**
+     * Place an Actor at the given cell index.
+     * If there is already an Actor in the cell it will
+     * be lost and is deactivated.
+     * @param anActor The Actor to be placed.
+     * @param index The cell index, as returned by getIndex.
+     */
+    public void placeActor(Actor anActor, long index)
+    {
+        placeActor(anActor, getRow(index), getCol(index));
+    }
+
+    /**
+     * Called when an Actor placed in this field is deactivated, so that
+     * it no longer counts towards the population of its species.
+     * @param anActor The Actor that is being deactivated.
+     */
+    void actorDeactivated(Actor anActor)
+    {
+        if(!concurrent && contains(anActor)) {
+            counts[anActor.getSpecies().getId()]--;
+        }
+    }
+
+    /**
+     * Return the number of active actors of the given species in the field.
+     * The count is kept up to date as actors are placed and deactivated.
+     * Plants are counted from the vegetation layer.
+     * @param species The species to count.
+     * @return The number of active actors of that species.
+     */
+    public int getCount(Species species)
+    {
+        if(species == Species.PLANT) {
+            return vegetation.count();
+        }
+        return counts[species.getId()];
+    }
+
+    /**
+     * @return The number of active animals in the field, of every species.
+     */
+    public int getAnimalCount()
+    {
+        int animals = 0;
+        for(int id = 0; id < Species.COUNT; id++) {
+            if(id != Species.PLANT.getId()) {
+                animals += counts[id];
+            }
+        }
+        return animals;
+    }
+
+    /**
+     * @return The plants of this field.
+     */
+    Vegetation getVegetation()
+    {
+        return vegetation;
+    }
+
+    /**
+     * Put a plant at the given row and column.
+     * @param row The row in the field.
+     * @param col The column in the field.
+     */
+    public void plant(int row, int col)
+    {
+        vegetation.plant(row, col);
+    }
+
+    /**
+     * @param row The row in the field.
+     * @param col The column in the field.
+     * @return true if there is a plant at the given position.
+     */
+    public boolean hasPlant(int row, int col)
+    {
+        return vegetation.has(row, col);
+    }
+
+    /**
+     * Eat the plant at the given location, if there is one. Animals on
+     * different threads may eat from the same field at once.
+     * @param location Where in the field.
+     * @return true if there was a plant to eat.
+     */
+    public boolean eatPlant(Location location)
+    {
+        return location != null && vegetation.eat(location.row(), location.col());
+    }
+
+    /**
+     * Grow the plants of the step before into this field: each plant of the
+     * previous field survives and may spread to the eight cells around it.
+     * Plants cannot grow under the active actors already placed here, so
+     * this must be called once the step's actors have all acted.
+     * @param previous The field of the step before.
+     * @param spreadChance The chance of each plant spreading.
+     * @param rand The random stream to draw from.
+     */
+    public void growPlants(Field previous, double spreadChance, RandomGenerator rand)
+    {
+        vegetation.growFrom(previous.vegetation, spreadChance, rand);
+        compactActors();
+        for(int slot = 0; slot < actorCount; slot++) {
+            if(actors[slot].isActive()) {
+                long index = actorCells[slot];
+                vegetation.remove(getRow(index), getCol(index));
+            }
         }
-        field.put(location, anActor);
-        actors.add(anActor);
+    }
+
+    /**
+     * Check whether an Actor is placed in this field at its current location.
+     * @param anActor The Actor to look for.
+     * @return true if the Actor occupies the cell at its location.
+     */
+    public boolean contains(Actor anActor)
+    {
+        Location location = anActor.getLocation();
+        return location != null && getActorAt(location) == anActor;
     }
     
     /**
@@ -60,57 +264,431 @@ public class Field
      */
     public Actor getActorAt(Location location)
     {
-        return field.get(location);
+        if (location == null) {
+            return null;
+        }
+        return cells.get(location.row(), location.col());
+    }
+
+    /**
+     * Return the Actor at the given row and column, if any.
+     * @param row The row in the field.
+     * @param col The column in the field.
+     * @return The Actor at the given position, or null if there is none.
+     */
+    public Actor getActorAt(int row, int col)
+    {
+        return cells.get(row, col);
+    }
+
+    /**
+     * Return the Actor in the given cell, if any.
+     * @param index The cell index, as returned by getIndex.
+     * @return The Actor in the given cell, or null if there is none.
+     */
+    public Actor getActorAt(long index)
+    {
+        return cells.get(getRow(index), getCol(index));
+    }
+
+    /**
+     * Copy out what is in every cell, for drawing: the species id of the
+     * actor in it, or else of Species.PLANT if a plant grows there, or
+     * else -1 for an empty cell.
+     * @param ids The array to fill, with one entry per cell index.
+     */
+    public void copySpeciesIds(int[] ids)
+    {
+        int plant = Species.PLANT.getId();
+        int index = 0;
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++, index++) {
+                Actor anActor = cells.get(row, col);
+                if(anActor != null) {
+                    ids[index] = anActor.getSpecies().getId();
+                }
+                else if(vegetation.has(row, col)) {
+                    ids[index] = plant;
+                }
+                else {
+                    ids[index] = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return what is in one cell, for drawing, as copySpeciesIds does.
+     * @param index The cell index.
+     * @return The species id in the cell, or -1 if it is empty.
+     */
+    public int getSpeciesId(long index)
+    {
+        int row = getRow(index);
+        int col = getCol(index);
+        Actor anActor = cells.get(row, col);
+        if(anActor != null) {
+            return anActor.getSpecies().getId();
+        }
+        return vegetation.has(row, col) ? Species.PLANT.getId() : -1;
+    }
+
+    /**
+     * Record which cells of this field differ from the field of the step
+     * before, in the actor or plant they hold. Only cells that were
+     * written during the step can have changed: the cells that held an
+     * actor in either field, and those where a plant was eaten, grew or
+     * was crushed. So this costs the number of actors, not the number of
+     * cells. It must be called once the step is complete, before the
+     * previous field is cleared. The changes are kept by int cell index
+     * for drawing, so the field must have fewer than 2^31 cells.
+     * @param previous The field of the step before.
+     */
+    public void recordChanges(Field previous)
+    {
+        if((long) depth * width > Integer.MAX_VALUE) {
+            throw new IllegalStateException("A " + depth + "x" + width
+                                            + " field is too large to draw");
+        }
+        compactActors();
+        previous.compactActors();
+        changedCount = 0;
+        if(changeStamps == null) {
+            changedCells = new int[depth * width];
+            changeStamps = new int[depth * width];
+        }
+        if(++stamp == 0) {
+            Arrays.fill(changeStamps, 0);
+            stamp = 1;
+        }
+        for(int slot = 0; slot < previous.actorCount; slot++) {
+            noteIfChanged(previous, (int) previous.actorCells[slot]);
+        }
+        for(int slot = 0; slot < actorCount; slot++) {
+            noteIfChanged(previous, (int) actorCells[slot]);
+        }
+        int chunksAcross = ChunkedCells.chunksAcross(width);
+        for(int chunk = 0; chunk < vegetation.getChunkTotal(); chunk++) {
+            if(!vegetation.isAllocated(chunk) && !previous.vegetation.isAllocated(chunk)) {
+                continue;
+            }
+            int firstRow = chunk / chunksAcross * ChunkedCells.CHUNK_SIZE;
+            int firstCol = chunk % chunksAcross * ChunkedCells.CHUNK_SIZE;
+            for(int row = 0; row < ChunkedCells.CHUNK_SIZE; row++) {
+                long bits = previous.vegetation.changedBits(vegetation, chunk, row);
+                while(bits != 0) {
+                    int col = firstCol + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    noteIfChanged(previous, (int) getIndex(firstRow + row, col));
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a cell to the changed cells, once, if it holds a different actor
+     * from the previous field, or has no actor in either and its plant
+     * came or went.
+     */
+    private void noteIfChanged(Field previous, int index)
+    {
+        if(changeStamps[index] == stamp) {
+            return;
+        }
+        changeStamps[index] = stamp;
+        int row = getRow(index);
+        int col = getCol(index);
+        Actor before = previous.cells.get(row, col);
+        Actor after = cells.get(row, col);
+        boolean changed;
+        if(before != after) {
+            changed = true;
+        }
+        else if(after != null) {
+            changed = false;
+        }
+        else {
+            changed = previous.vegetation.hadPlant(row, col) != vegetation.has(row, col);
+        }
+        if(changed) {
+            changedCells[changedCount++] = index;
+        }
+    }
+
+    /**
+     * @return true if recordChanges has been called since the field was
+     *         last cleared, so that getChangedCells describes it.
+     */
+    public boolean hasRecordedChanges()
+    {
+        return changedCount >= 0;
+    }
+
+    /**
+     * @return The number of cells recorded as changed.
+     */
+    public int getChangedCount()
+    {
+        return Math.max(changedCount, 0);
+    }
+
+    /**
+     * @param n A number from 0 to getChangedCount() - 1.
+     * @return The cell index of the nth changed cell.
+     */
+    public int getChangedCell(int n)
+    {
+        return changedCells[n];
+    }
+
+    /**
+     * Return the cell index of the given row and column.
+     * @param row The row in the field.
+     * @param col The column in the field.
+     * @return The row-major index of the cell.
+     */
+    public long getIndex(int row, int col)
+    {
+        return (long) row * width + col;
     }
 
     /**
-     * Get a shuffled list of the free adjacent locations.
+     * @param index A cell index.
+     * @return The row of the given cell.
+     */
+    public int getRow(long index)
+    {
+        return (int) (index / width);
+    }
+
+    /**
+     * @param index A cell index.
+     * @return The column of the given cell.
+     */
+    public int getCol(long index)
+    {
+        return (int) (index % width);
+    }
+
+    /**
+     * Visits the cells around a location without building a list of them.
+     */
+    public interface CellVisitor
+    {
+        /**
+         * Called once for each cell visited.
+         * @param row The row of the cell.
+         * @param col The column of the cell.
+         * @param occupant The Actor in the cell, or null if it is empty.
+         */
+        void visit(int row, int col, Actor occupant);
+    }
+
+    /**
+     * Call the visitor for every cell within range of the given location.
+     * The location itself is not visited and all visited cells lie within
+     * the grid. Cells are visited in row-major order.
+     * @param location The location whose neighbours are visited.
+     * @param range the range of area we visit around location
+     * @param visitor The visitor to call for each cell.
+     */
+    public void forEachAdjacent(Location location, int range, CellVisitor visitor)
+    {
+        if(location == null) {
+            return;
+        }
+        int row = location.row();
+        int col = location.col();
+        int lastRow = Math.min(row + range, depth - 1);
+        int lastCol = Math.min(col + range, width - 1);
+        for(int r = Math.max(row - range, 0); r <= lastRow; r++) {
+            for(int c = Math.max(col - range, 0); c <= lastCol; c++) {
+                if(r != row || c != col) {
+                    visitor.visit(r, c, cells.get(r, c));
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the animals of this field that are ready to breed into the given
+     * map, and answer partner queries from it until the field is cleared.
+     * The map describes the field as it was when this was called, so it
+     * must be called before the step's actors start acting.
+     * @param map The map to build, of the same size as this field.
+     */
+    public void useDensityMap(DensityMap map)
+    {
+        map.build(this);
+        densityMap = map;
+    }
+
+    /**
+     * Spread the scent of the prey in this field into the given map, and
+     * keep it for hunters to follow until the field is cleared. Like
+     * useDensityMap, this must be called before the step's actors act.
+     * @param map The map to build, of the same size as this field.
+     */
+    public void useScentMap(ScentMap map)
+    {
+        map.build(this);
+        scentMap = map;
+    }
+
+    /**
+     * @return The scent map built from this field, or null if there is none.
+     */
+    public ScentMap getScentMap()
+    {
+        return scentMap;
+    }
+
+    /**
+     * Have the actors acting on this field report their actions to the
+     * given metrics, until the field is cleared.
+     * @param metrics The metrics of the step, or null if it is not measured.
+     */
+    public void useMetrics(StepMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The metrics the actors of this step report to, or null.
+     */
+    public StepMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Have the actors acting on this field use the given parameters, from
+     * now on.
+     * @param parameters The parameters of the simulation.
+     */
+    public void setParameters(Parameters parameters)
+    {
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return The parameters the actors acting on this field use.
+     */
+    public Parameters getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * Check whether an animal of the given species and gender that is ready
+     * to breed is within a distance of the provided location.
+     * @param location The Location from which to search.
+     * @param range the range of area we search around location
+     * @param species the species of partner wanted
+     * @param gender the gender of partner wanted
+     * @return true if there is a suitable partner
+     */
+    public boolean hasBreedingPartner(Location location, int range, Species species, Gender gender)
+    {
+        if(location == null) {
+            return false;
+        }
+        if(densityMap != null) {
+            return densityMap.count(species, gender, location.row(), location.col(), range) > 0;
+        }
+        return hasActor(location, range, (actor) -> actor.getSpecies() == species
+                        && actor instanceof Animal animal && animal.getGender() == gender
+                        && animal.getState() == AnimalState.BREEDING);
+    }
+
+    /**
+     * Pick a random cell adjacent to the given location that an animal could move
+     * into: one that is empty or holds an inactive Actor. Plants do not take
+     * up cells, so animals can always move on top of them.
+     * Every such cell is equally likely to be picked.
+     *
+     * @param location Look for cells adjacent to this.
+     * @param range How far away to look
+     * @return A free adjacent location, or null if there is none.
+     */
+    public Location getRandomFreeLocation(Location location, int range)
+    {
+        return toLocation(pickAdjacent(location, range, FREE, true));
+    }
+
+    /**
+     * Pick the cell adjacent to the given location that an animal could move
+     * into where the scent of a predator's prey is strongest. Of equally
+     * strong cells, each is equally likely to be picked.
      *
-     * @param location Get locations adjacent to this.
+     * @param location Look for cells adjacent to this.
      * @param range How far away to look
-     * @return A list of free adjacent locations.
+     * @param scent The scent to follow, built from the current field.
+     * @param predator The species whose prey is followed; the map must track it.
+     * @return A free adjacent location, or null if no free cell has any scent.
      */
-    public List<Location> getFreeOrPlant(Location location, int range)
+    public Location getFreeLocationUpScent(Location location, int range, ScentMap scent, Species predator)
     {
-        return getAdjacentLocations(location, range).stream().filter((loc) -> {
-            Actor actor = getActorAt(loc);
-            return actor == null || !actor.isActive() || actor instanceof Plant;
-        }).collect(Collectors.toCollection(ArrayList::new));
+        if(location == null) {
+            return null;
+        }
+        int row = location.row();
+        int col = location.col();
+        int lastRow = Math.min(row + range, depth - 1);
+        int lastCol = Math.min(col + range, width - 1);
+        long picked = -1;
+        float strongest = 0;
+        int ties = 0;
+        for(int r = Math.max(row - range, 0); r <= lastRow; r++) {
+            for(int c = Math.max(col - range, 0); c <= lastCol; c++) {
+                Actor a = cells.get(r, c);
+                if((r != row || c != col) && (a == null || FREE.test(a))) {
+                    float here = scent.getScent(predator, r, c);
+                    if(here > strongest) {
+                        strongest = here;
+                        ties = 1;
+                        picked = getIndex(r, c);
+                    }
+                    else if(here == strongest && here > 0
+                            && Randomizer.getRandom().nextInt(++ties) == 0) {
+                        picked = getIndex(r, c);
+                    }
+                }
+            }
+        }
+        return toLocation(picked);
     }
 
     /**
-     * Return a shuffled list of locations adjacent to the given one.
-     * The list will not include the location itself.
-     * All locations will lie within the grid.
-     * @param location The location from which to generate adjacencies.
+     * Gets a random location within a distance of the provided location, not
+     * including the given location, that has a plant. Every such cell is
+     * equally likely to be picked.
+     * @param location The Location from which to search.
      * @param range the range of area we search around location
-     * @return A list of locations adjacent to that given.
-     */
-    public List<Location> getAdjacentLocations(Location location, int range)
-    {
-        // The list of locations to be returned.
-        List<Location> locations = new ArrayList<>();
-        if(location != null) {
-            int row = location.row();
-            int col = location.col();
-            for(int roffset = -range; roffset <= range; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int coffset = -range; coffset <= range; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
+     * @return a Location with a plant, or null if there is none
+     */
+    public Location findPlant(Location location, int range)
+    {
+        if(location == null) {
+            return null;
+        }
+        int row = location.row();
+        int col = location.col();
+        int lastRow = Math.min(row + range, depth - 1);
+        int lastCol = Math.min(col + range, width - 1);
+        long picked = -1;
+        int matches = 0;
+        for(int r = Math.max(row - range, 0); r <= lastRow; r++) {
+            for(int c = Math.max(col - range, 0); c <= lastCol; c++) {
+                if((r != row || c != col) && vegetation.has(r, c)) {
+                    matches++;
+                    if(matches == 1 || Randomizer.getRandom().nextInt(matches) == 0) {
+                        picked = getIndex(r, c);
                     }
                 }
             }
-            
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
         }
-        return locations;
+        return toLocation(picked);
     }
 
     /**
@@ -122,44 +700,168 @@ public class Field
      * @return a Location where a suitable Actor can be found, or null if none exist
      */
     public Location findActor(Location location, int range, Predicate<Actor> predicate) {
-        List<Location> locations = getAdjacentLocations(location, range);
-        for (Location loc : locations) {
-            Actor a = getActorAt(loc);
-            // Found a suitable Actor
-            if (a != null && predicate.test(a)) { return loc; }
-        }
-        // Didn't find one
-        return null;
+        return toLocation(pickAdjacent(location, range, predicate, false));
     }
 
     /**
-     * Print out the number of Hyenas and Zebras in the field.
+     * Check whether any Actor within a distance of the provided location, not including
+     * the given location, matches the given predicate. Stops at the first match.
+     * @param location The Location from which to search.
+     * @param range the range of area we search around location
+     * @param predicate the Predicate to check each Actor with
+     * @return true if a suitable Actor exists
      */
-    public void fieldStats()
+    public boolean hasActor(Location location, int range, Predicate<Actor> predicate)
     {
-        int numHyenaes = 0, numZebras = 0;
-        for(Actor anActor : field.values()) {
-            if(anActor instanceof Hyena hyena) {
-                if(hyena.isActive()) {
-                    numHyenaes++;
+        if(location == null) {
+            return false;
+        }
+        int row = location.row();
+        int col = location.col();
+        int lastRow = Math.min(row + range, depth - 1);
+        int lastCol = Math.min(col + range, width - 1);
+        for(int r = Math.max(row - range, 0); r <= lastRow; r++) {
+            for(int c = Math.max(col - range, 0); c <= lastCol; c++) {
+                Actor a = cells.get(r, c);
+                if(a != null && (r != row || c != col) && predicate.test(a)) {
+                    return true;
                 }
             }
-            else if(anActor instanceof Zebra zebra) {
-                if(zebra.isActive()) {
-                    numZebras++;
+        }
+        return false;
+    }
+
+    /**
+     * Pick a random matching cell around a location. Walks the neighbourhood
+     * once and keeps each match with probability 1/(matches so far), so every
+     * matching cell is equally likely and no list is built.
+     * @param location The location from which to search.
+     * @param range the range of area we search around location
+     * @param predicate the Predicate to check each occupant with
+     * @param emptyMatches whether empty cells count as a match
+     * @return the cell index of the picked cell, or -1 if nothing matched
+     */
+    private long pickAdjacent(Location location, int range, Predicate<Actor> predicate, boolean emptyMatches)
+    {
+        if(location == null) {
+            return -1;
+        }
+        int row = location.row();
+        int col = location.col();
+        int lastRow = Math.min(row + range, depth - 1);
+        int lastCol = Math.min(col + range, width - 1);
+        long picked = -1;
+        int matches = 0;
+        for(int r = Math.max(row - range, 0); r <= lastRow; r++) {
+            for(int c = Math.max(col - range, 0); c <= lastCol; c++) {
+                if(r == row && c == col) {
+                    continue;
+                }
+                Actor a = cells.get(r, c);
+                if(a == null ? emptyMatches : predicate.test(a)) {
+                    matches++;
+                    if(matches == 1 || Randomizer.getRandom().nextInt(matches) == 0) {
+                        picked = getIndex(r, c);
+                    }
                 }
             }
         }
+        return picked;
+    }
+
+    /**
+     * @param index A cell index, or -1.
+     * @return The location of the cell, or null if the index is -1.
+     */
+    private Location toLocation(long index)
+    {
+        return index < 0 ? null : new Location(getRow(index), getCol(index));
+    }
+
+    /**
+     * Print out the number of Hyenas and Zebras in the field.
+     */
+    public void fieldStats()
+    {
+        int numHyenaes = getCount(Species.HYENA);
+        int numZebras = getCount(Species.ZEBRA);
         System.out.println("Zebras: " + numZebras +
                            " Hyenas: " + numHyenaes);
     }
 
     /**
-     * Empty the field.
+     * Empty the field so it can be reused.
+     * The storage is kept, so clearing a field costs no allocation.
      */
     public void clear()
     {
-        field.clear();
+        cells.clear();
+        Arrays.fill(actors, 0, actorCount, null);
+        actorCount = 0;
+        holes = 0;
+        Arrays.fill(counts, 0);
+        vegetation.clear();
+        densityMap = null;
+        scentMap = null;
+        metrics = null;
+        changedCount = -1;
+    }
+
+    /**
+     * Start a phase in which several threads may place actors at once.
+     * Threads must write to different cells. Until endConcurrentUpdates is
+     * called, only the cells are kept up to date: the actor list and the
+     * population counts are not.
+     */
+    public void beginConcurrentUpdates()
+    {
+        concurrent = true;
+        placedConcurrently = false;
+    }
+
+    /**
+     * End a phase started by beginConcurrentUpdates. If actors were placed,
+     * the actor list is rebuilt in row-major order and the counts are
+     * recounted from the cells. A field that was only read, such as the
+     * current field during a step, keeps its actor list and only has its
+     * counts recounted.
+     */
+    public void endConcurrentUpdates()
+    {
+        concurrent = false;
+        if(!placedConcurrently) {
+            Arrays.fill(counts, 0);
+            for(int slot = 0; slot < actorCount; slot++) {
+                Actor anActor = actors[slot];
+                if(anActor != null && anActor.isActive()) {
+                    counts[anActor.getSpecies().getId()]++;
+                }
+            }
+            return;
+        }
+        Arrays.fill(actors, 0, actorCount, null);
+        actorCount = 0;
+        holes = 0;
+        Arrays.fill(counts, 0);
+        cells.takeAll(this::placeActor);
+    }
+
+    /**
+     * Check cheaply whether an area of the field may hold actors, so that
+     * areas where nothing lives can be skipped. The answer is only as fine
+     * as the chunks: it may be true for an empty area in the same chunk as
+     * some actors, but it is never false for an area with actors in it. Actors
+     * placed concurrently are only taken into account once
+     * endConcurrentUpdates has been called.
+     * @param firstRow The top row of the area.
+     * @param firstCol The left column of the area.
+     * @param lastRow The bottom row of the area.
+     * @param lastCol The right column of the area.
+     * @return false if the area is certainly empty.
+     */
+    public boolean mayHaveActors(int firstRow, int firstCol, int lastRow, int lastCol)
+    {
+        return cells.mayHaveActors(firstRow, firstCol, lastRow, lastCol);
     }
 
     /**
@@ -168,19 +870,49 @@ public class Field
      */
     public boolean isViable()
     {
-        Set<Class<?>> seen = new HashSet<>();
-        for (Actor anActor : actors) {
-            seen.add(anActor.getClass());
+        int species = 0;
+        for (int id = 0; id < Species.COUNT; id++) {
+            if (getCount(Species.byId(id)) > 0) {
+                species++;
+            }
         }
-        return seen.size() >= 2;
+        return species >= 2;
     }
     
     /**
-     * Get the list of actors.
+     * Get the list of actors, in the order they were placed.
+     * The list is a read-only view of the field's storage and changes when
+     * the field does, so it must not be kept after the field is reused.
      */
     public List<Actor> getActors()
     {
-        return actors;
+        compactActors();
+        return Collections.unmodifiableList(Arrays.asList(actors).subList(0, actorCount));
+    }
+
+    /**
+     * Close up the holes left by overwritten actors, keeping the
+     * remaining actors in the order they were placed.
+     */
+    private void compactActors()
+    {
+        if(holes == 0) {
+            return;
+        }
+        int kept = 0;
+        for(int slot = 0; slot < actorCount; slot++) {
+            Actor anActor = actors[slot];
+            if(anActor != null) {
+                long index = actorCells[slot];
+                actors[kept] = anActor;
+                actorCells[kept] = index;
+                cells.setSlot(getRow(index), getCol(index), kept);
+                kept++;
+            }
+        }
+        Arrays.fill(actors, kept, actorCount, null);
+        actorCount = kept;
+        holes = 0;
     }
 
     /**
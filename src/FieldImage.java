@@ -0,0 +1,60 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * An image of a field with one pixel per cell. Cells are coloured by
+ * writing straight into the image's int[] buffer from the species id of
+ * each cell, which is far quicker than filling a rectangle per cell.
+ *
+ * The image is offscreen, so it can be drawn into without a display.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class FieldImage
+{
+    private final BufferedImage image;
+    // The pixels of the image's buffer, by cell index.
+    private final int[] pixels;
+
+    /**
+     * Create an image of a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public FieldImage(int depth, int width)
+    {
+        image = new BufferedImage(width, depth, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Colour every cell of the image.
+     * @param speciesIds The species id of each cell, or -1 for an empty cell.
+     * @param palette The RGB value of each species id + 1.
+     */
+    public void drawCells(int[] speciesIds, int[] palette)
+    {
+        for(int index = 0; index < pixels.length; index++) {
+            pixels[index] = palette[speciesIds[index] + 1];
+        }
+    }
+
+    /**
+     * Colour one cell of the image.
+     * @param index The cell index.
+     * @param rgb The colour to draw it in.
+     */
+    public void drawCell(int index, int rgb)
+    {
+        pixels[index] = rgb;
+    }
+
+    /**
+     * @return The image, to be drawn scaled to the size wanted.
+     */
+    public BufferedImage getImage()
+    {
+        return image;
+    }
+}
@@ -0,0 +1,233 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The drawing behind SimulatorView, kept apart from the window so that it
+ * can run without a display.
+ *
+ * show turns the field into an immutable frame and leaves it in a
+ * single-slot mailbox, merging it with any frame still waiting there.
+ * draw takes the latest frame and colours a FieldImage from it, only
+ * touching the cells that changed when the field recorded its changes.
+ * show is called by the simulation thread and draw by the thread that
+ * puts the image on screen, so neither ever waits for the other.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class FieldRenderer
+{
+    // Colors used for empty locations.
+    private static final Color EMPTY_COLOR = Color.white;
+    // Color used for objects that have no defined color.
+    private static final Color UNKNOWN_COLOR = Color.gray;
+    private static final String POPULATION_PREFIX = "Population: ";
+
+    // The RGB value each cell is drawn in, by species id + 1, with
+    // empty cells at 0
+    private final int[] palette;
+    // Set when the palette changes, so that every cell is drawn again
+    private volatile boolean recolor;
+    // The frame waiting to be drawn, or null if the latest has been drawn
+    private final AtomicReference<RenderFrame> mailbox = new AtomicReference<>();
+
+    // Used by the simulation thread: the species id of each cell of the
+    // last field shown, and the statistics object
+    private int[] latestIds;
+    private final FieldStats stats;
+    // Used by the drawing thread: the species id of each cell as drawn,
+    // the image they are drawn in, and the text of the frame drawn last
+    private final int[] shownIds;
+    private final FieldImage image;
+    private String time;
+    private String population;
+
+    /**
+     * Create a renderer for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public FieldRenderer(int depth, int width)
+    {
+        stats = new FieldStats();
+        palette = new int[Species.COUNT + 1];
+        Arrays.fill(palette, UNKNOWN_COLOR.getRGB());
+        palette[0] = EMPTY_COLOR.getRGB();
+        setColor(Species.ZEBRA, Color.orange);
+        setColor(Species.HYENA, Color.blue);
+        setColor(Species.GIRAFFE, Color.red);
+        setColor(Species.LION, Color.black);
+        setColor(Species.PLANT, Color.green);
+        image = new FieldImage(depth, width);
+        shownIds = new int[depth * width];
+        Arrays.fill(shownIds, -1);
+    }
+
+    /**
+     * Define a color to be used for a given species.
+     * @param species The species.
+     * @param color The color to be used for the given species.
+     */
+    public final void setColor(Species species, Color color)
+    {
+        palette[species.getId() + 1] = color.getRGB();
+        recolor = true;
+    }
+
+    /**
+     * Turn the field into a frame to be drawn. Called by the simulation
+     * thread; returns without waiting for the frame to be drawn.
+     * The field is a buffer the simulator reuses, so everything needed
+     * for display is copied out of it before this method returns.
+     * @param time Which iteration step it is.
+     * @param field The field whose status is to be displayed.
+     */
+    public void show(String time, Field field)
+    {
+        stats.reset();
+        String populationText = POPULATION_PREFIX + stats.getPopulationDetails(field);
+
+        RenderFrame frame;
+        if(latestIds == null || !field.hasRecordedChanges()) {
+            // The first field, a reset, or a field that does not know what changed.
+            if(latestIds == null) {
+                latestIds = new int[field.getDepth() * field.getWidth()];
+            }
+            field.copySpeciesIds(latestIds);
+            frame = new RenderFrame(time, populationText, null, latestIds.clone());
+        }
+        else {
+            int count = field.getChangedCount();
+            int[] cells = new int[count];
+            int[] ids = new int[count];
+            for(int n = 0; n < count; n++) {
+                int index = field.getChangedCell(n);
+                cells[n] = index;
+                ids[n] = field.getSpeciesId(index);
+                latestIds[index] = ids[n];
+            }
+            frame = new RenderFrame(time, populationText, cells, ids);
+        }
+        publish(frame);
+    }
+
+    /**
+     * Leave a frame in the mailbox. A frame that has not been drawn yet is
+     * merged into the new one rather than lost, as the new one only holds
+     * the cells that changed since it.
+     */
+    private void publish(RenderFrame frame)
+    {
+        while(true) {
+            RenderFrame waiting = mailbox.get();
+            RenderFrame next = frame;
+            if(waiting != null) {
+                next = frame.after(waiting, latestIds);
+            }
+            if(mailbox.compareAndSet(waiting, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Draw the latest frame into the image, if there is one, and every
+     * cell again if the palette has changed. Called by the drawing thread.
+     * @return true if the image changed.
+     */
+    public boolean draw()
+    {
+        RenderFrame frame = mailbox.getAndSet(null);
+        if(frame != null) {
+            time = frame.time;
+            population = frame.population;
+            if(frame.cells == null) {
+                System.arraycopy(frame.ids, 0, shownIds, 0, shownIds.length);
+                image.drawCells(shownIds, palette);
+            }
+            else {
+                for(int n = 0; n < frame.cells.length; n++) {
+                    shownIds[frame.cells[n]] = frame.ids[n];
+                    image.drawCell(frame.cells[n], palette[frame.ids[n] + 1]);
+                }
+            }
+        }
+        if(recolor) {
+            recolor = false;
+            image.drawCells(shownIds, palette);
+            return true;
+        }
+        return frame != null;
+    }
+
+    /**
+     * @return The step of the frame drawn last, or null if none has been.
+     */
+    public String getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @return The population text of the frame drawn last, or null if none has been.
+     */
+    public String getPopulation()
+    {
+        return population;
+    }
+
+    /**
+     * @return The image the frames are drawn in, at one pixel per cell.
+     */
+    public BufferedImage getImage()
+    {
+        return image.getImage();
+    }
+
+    /**
+     * One step of the simulation as the view needs it, which is never
+     * changed once made. A frame holds either the species id of every
+     * cell, or only of the cells that changed since the frame before.
+     */
+    private static class RenderFrame
+    {
+        private final String time;
+        private final String population;
+        // The cell indices whose ids are given, or null if ids covers every cell.
+        private final int[] cells;
+        private final int[] ids;
+
+        RenderFrame(String time, String population, int[] cells, int[] ids)
+        {
+            this.time = time;
+            this.population = population;
+            this.cells = cells;
+            this.ids = ids;
+        }
+
+        /**
+         * Merge an older frame that was never drawn into this one.
+         * @param older The frame before this one.
+         * @param latestIds The ids of every cell as of this frame, to fall
+         *                  back on when the changes would be no smaller.
+         * @return A frame that takes a view of the frame before older to this one.
+         */
+        RenderFrame after(RenderFrame older, int[] latestIds)
+        {
+            if(cells == null) {
+                return this;
+            }
+            if(older.cells == null || older.cells.length + cells.length >= latestIds.length / 4) {
+                return new RenderFrame(time, population, null, latestIds.clone());
+            }
+            // Later changes are drawn after earlier ones, so they win.
+            int[] mergedCells = Arrays.copyOf(older.cells, older.cells.length + cells.length);
+            int[] mergedIds = Arrays.copyOf(older.ids, older.ids.length + ids.length);
+            System.arraycopy(cells, 0, mergedCells, older.cells.length, cells.length);
+            System.arraycopy(ids, 0, mergedIds, older.ids.length, ids.length);
+            return new RenderFrame(time, population, mergedCells, mergedIds);
+        }
+    }
+}
@@ -1,18 +1,15 @@
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * This class collects and provides some statistical data on the state 
- * of a field. It is flexible: it will create and maintain a counter 
- * for any class of object that is found within the field.
+ * of a field. It keeps a counter for every species in the Species
+ * registry, indexed by species id.
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
  */
 public class FieldStats
 {
-    // Counters for each type of entity (fox, rabbit, etc.) in the simulation.
-    private final Map<Class<?>, Counter> counters;
+    // Counters for each species in the simulation, by species id.
+    private final Counter[] counters;
     // Whether the counters are currently up to date.
     private boolean countsValid;
 
@@ -21,14 +18,18 @@ public class FieldStats
      */
     public FieldStats()
     {
-        // Set up a collection for counters for each type of animal that
-        // we might find
-        counters = new HashMap<>();
-        countsValid = true;
+        // Set up a counter for each species that we might find
+        counters = new Counter[Species.COUNT];
+        for(int id = 0; id < Species.COUNT; id++) {
+            counters[id] = new Counter(Species.byId(id).toString());
+        }
+        countsValid = false;
     }
 
     /**
      * Get details of what is in the field.
+     * Only counts are kept; no reference to the field is held afterwards,
+     * so the simulator is free to reuse it.
      * @return A string describing what is in the field.
      */
     public String getPopulationDetails(Field field)
@@ -37,8 +38,7 @@ public class FieldStats
         if(!countsValid) {
             generateCounts(field);
         }
-        for(Class<?> key : counters.keySet()) {
-            Counter info = counters.get(key);
+        for(Counter info : counters) {
             details.append(info.getName())
                    .append(": ")
                    .append(info.getCount())
@@ -54,26 +54,28 @@ public class FieldStats
     public void reset()
     {
         countsValid = false;
-        for(Class<?> key : counters.keySet()) {
-            Counter count = counters.get(key);
+        for(Counter count : counters) {
             count.reset();
         }
     }
 
     /**
-     * Increment the count for one class of animal.
-     * @param animalClass The class of animal to increment.
+     * Increment the count for one species.
+     * @param species The species to increment.
      */
-    public void incrementCount(Class<?> animalClass)
+    public void incrementCount(Species species)
     {
-        Counter count = counters.get(animalClass);
-        if(count == null) {
-            // We do not have a counter for this species yet.
-            // Create one.
-            count = new Counter(animalClass.getName());
-            counters.put(animalClass, count);
-        }
-        count.increment();
+        incrementCount(species, 1);
+    }
+
+    /**
+     * Increase the count for one species.
+     * @param species The species to increment.
+     * @param amount How many to add.
+     */
+    public void incrementCount(Species species, int amount)
+    {
+        counters[species.getId()].increment(amount);
     }
 
     /**
@@ -95,22 +97,17 @@ public class FieldStats
     }
     
     /**
-     * Generate counts of the number of foxes and rabbits.
-     * These are not kept up to date as foxes and rabbits
-     * are placed in the field, but only when a request
-     * is made for the information.
+     * Generate counts of the number of each species.
+     * The field keeps live counts of its active actors, so this
+     * copies them rather than scanning the grid.
      * @param field The field to generate the stats for.
      */
     private void generateCounts(Field field)
     {
         reset();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Actor actor = field.getActorAt(new Location(row, col));
-                if(actor != null) {
-                    incrementCount(actor.getClass());
-                }
-            }
+        for(int id = 0; id < Species.COUNT; id++) {
+            Species species = Species.byId(id);
+            incrementCount(species, field.getCount(species));
         }
         countsValid = true;
     }
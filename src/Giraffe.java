@@ -7,18 +7,6 @@
  */
 public class Giraffe extends Animal implements Edible
 {
-    // Characteristics shared by all Giraffes (class variables).
-    // The age at which a Giraffe can start to breed.
-    protected int getBreedingAge() { return 24*7; }
-    // The age to which a Giraffe can live.
-    protected int getMaxAge() { return 24*56; }
-    // The likelihood of a Giraffe breeding.
-    protected double getBreedingProbability() { return 0.08; }
-    // The maximum number of births.
-    protected int getMaxLitterSize() { return 2; }
-    // The amount of "food" a giraffe gives when eaten
-    public int getFoodValue() { return 24*14; }
-
     /**
      * Create a new Giraffe. A Giraffe may be created with age
      * zero (a newborn) or with a random age.
@@ -28,7 +16,7 @@ public class Giraffe extends Animal implements Edible
      */
     public Giraffe(boolean randomAge, Location location)
     {
-        super(randomAge, location);
+        super(Species.GIRAFFE, randomAge, location);
     }
 
     @Override
@@ -50,16 +38,6 @@ public class Giraffe extends Animal implements Edible
         return new Giraffe(false, loc);
     }
 
-    /**
-     * Check if this animal can eat the given actor
-     * @param actor the actor to check
-     * @return true if this animal can eat `actor`
-     */
-    @Override
-    protected boolean canEat(Actor actor) {
-        return actor instanceof Plant;
-    }
-
     protected void updateState(Environment env) {
         if (!isActive()) {
             setState(AnimalState.DEAD);
@@ -72,8 +50,12 @@ public class Giraffe extends Animal implements Edible
         }
     }
 
+    public int getFoodValue() {
+        return getSpecies().getFoodValue();
+    }
+
     public void eat() {
-        setDead();
+        setDead(DeathCause.EATEN);
     }
     
     /**
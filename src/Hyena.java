@@ -9,16 +9,6 @@ import java.util.Arrays;
  */
 public class Hyena extends Animal
 {
-    // Characteristics shared by all Hyenas (class variables).
-    // The age at which a Hyena can start to breed.
-    protected int getBreedingAge() { return 24; }
-    // The age to which a Hyena can live.
-    protected int getMaxAge() { return 24*30; }
-    // The likelihood of a Hyena breeding.
-    protected double getBreedingProbability() { return 0.06; }
-    // The maximum number of births.
-    protected int getMaxLitterSize() { return 2; }
-
     /**
      * Create a Hyena. A Hyena can be created as a newborn (age zero
      * and not hungry) or with a random age and food level.
@@ -28,7 +18,7 @@ public class Hyena extends Animal
      */
     public Hyena(boolean randomAge, Location location)
     {
-        super(randomAge, location);
+        super(Species.HYENA, randomAge, location);
     }
 
     @Override
@@ -72,17 +62,7 @@ public class Hyena extends Animal
     {
         return new Hyena(false, loc);
     }
-    
-    /**
-     * Check if this animal can eat the given actor
-     * @param actor the actor to check
-     * @return true if this animal can eat `actor`
-     */
-    @Override
-    protected boolean canEat(Actor actor){
-        return actor instanceof Zebra;
-    }
-    
+        
     /**
      * Wakes up when night ends unless it's bad weather
      * @return true if should wake up 
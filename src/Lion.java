@@ -7,16 +7,6 @@
  */
 public class Lion extends Animal
 {
-    // Characteristics shared by all Lions (class variables).
-    // The age at which a Lion can start to breed.
-    protected int getBreedingAge() { return 24*3; }
-    // The age to which a Lion can live.
-    protected int getMaxAge() { return 24*42; }
-    // The likelihood of a Lion breeding.
-    protected double getBreedingProbability() { return 0.08; }
-    // The maximum number of births.
-    protected int getMaxLitterSize() { return 2; }
-
     /**
      * Create a Lion. A Lion can be created as a newborn (age zero
      * and not hungry) or with a random age and food level.
@@ -26,7 +16,7 @@ public class Lion extends Animal
      */
     public Lion(boolean randomAge, Location location)
     {
-        super(randomAge, location);
+        super(Species.LION, randomAge, location);
     }
 
     @Override
@@ -44,17 +34,6 @@ public class Lion extends Animal
         return new Lion(false, loc);
     }
 
-    /**
-     * Check if this animal can eat the given actor
-     * @param actor the actor to check
-     * @return true if this animal can eat `actor`
-     */
-    @Override
-    protected boolean canEat(Actor actor)
-    {
-        return actor instanceof Giraffe || actor instanceof Zebra;
-    }
-
     @Override
     protected void updateState(Environment env) {
         if (!isActive()) {
@@ -0,0 +1,470 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the simulation once for each of many sets of parameters, and
+ * reports a summary of each run: how many steps the populations lasted,
+ * and the final and mean count of every species.
+ *
+ * The sets of parameters are made by varying some of them, the axes of
+ * the sweep, from a base set. They are made either as a grid, every
+ * combination of a few evenly spaced levels of each axis, or as a Latin
+ * hypercube, a given number of samples in which each axis is divided into
+ * that many strata and each stratum is sampled exactly once.
+ *
+ * The runs are shared out between a bounded number of threads. Each thread
+ * keeps one Simulator for all the runs it takes, resetting it with the
+ * parameters and seed of each, so the fields, maps and animal buffers
+ * grown by one run are reused by the next and every run after the first
+ * few runs in already compiled code. The seed of each run is derived from
+ * the sweep's seed and the number of the run, so a summary does not
+ * depend on the number of threads or on which thread took the run.
+ * The workers pass each summary back to the thread that started the
+ * sweep, which hands them on in the order of the runs, so a slow listener
+ * never holds up a worker.
+ *
+ * Usage: java ParameterSweep depth width steps seed threads mode axis...
+ * where mode is grid or lhs:(samples), and each axis is
+ * name=min:max:levels (levels is only used by a grid). For example
+ *     java ParameterSweep 80 120 500 1111 4 grid zebra.breeding=0.05:0.15:3 disease.spread=0:0.2:3
+ * A CSV row is printed for each run, in the order of the runs.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class ParameterSweep
+{
+    private static final String USAGE = "Usage: java ParameterSweep depth width steps seed threads"
+                                        + " grid|lhs:samples name=min:max[:levels]...";
+
+    private final int depth, width, steps;
+    private final Parameters base;
+    // The parameters varied by the sweep, in the order they were added.
+    private final List<Axis> axes = new ArrayList<>();
+
+    /**
+     * A parameter varied by a sweep, between a smallest and a largest value.
+     */
+    private static class Axis
+    {
+        private final String name;
+        private final double min, max;
+        private final int levels;
+
+        private Axis(String name, double min, double max, int levels)
+        {
+            this.name = name;
+            this.min = min;
+            this.max = max;
+            this.levels = levels;
+        }
+
+        /**
+         * @return The value a fraction of the way from min to max.
+         */
+        private double at(double fraction)
+        {
+            return min + (max - min) * fraction;
+        }
+    }
+
+    /**
+     * What one run of a sweep came to.
+     */
+    public static class Summary
+    {
+        // Passed back by a worker when it has no more runs to take.
+        private static final Summary WORKER_DONE = new Summary(-1, null, 0, null, null);
+
+        private final int run;
+        private final Parameters parameters;
+        private final int steps;
+        private final int[] finalCount;
+        private final double[] meanCount;
+
+        private Summary(int run, Parameters parameters, int steps, int[] finalCount, double[] meanCount)
+        {
+            this.run = run;
+            this.parameters = parameters;
+            this.steps = steps;
+            this.finalCount = finalCount;
+            this.meanCount = meanCount;
+        }
+
+        /**
+         * @return The number of the run, its place in the list of parameters.
+         */
+        public int getRun()
+        {
+            return run;
+        }
+
+        /**
+         * @return The parameters of the run.
+         */
+        public Parameters getParameters()
+        {
+            return parameters;
+        }
+
+        /**
+         * @return The number of steps run, fewer than asked for if the
+         *         field stopped being viable.
+         */
+        public int getSteps()
+        {
+            return steps;
+        }
+
+        /**
+         * @return The count of a species at the end of the run.
+         */
+        public int getFinalCount(Species species)
+        {
+            return finalCount[species.getId()];
+        }
+
+        /**
+         * @return The mean count of a species over the steps of the run.
+         */
+        public double getMeanCount(Species species)
+        {
+            return meanCount[species.getId()];
+        }
+    }
+
+    /**
+     * Create a sweep with no axes.
+     * @param depth The depth of each field.
+     * @param width The width of each field.
+     * @param steps The most steps each run is taken through.
+     * @param base The parameters that are not varied.
+     */
+    public ParameterSweep(int depth, int width, int steps, Parameters base)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        this.base = base;
+    }
+
+    /**
+     * Vary a parameter in the sweep.
+     * @param name The name of the parameter, one of Parameters.getNames.
+     * @param min Its smallest value.
+     * @param max Its largest value.
+     * @param levels The number of evenly spaced values it takes in a grid,
+     *               from min to max.
+     * @throws IllegalArgumentException If there is no such parameter, either
+     *         value is out of range, or there are no levels.
+     */
+    public void addAxis(String name, double min, double max, int levels)
+    {
+        if(levels < 1) {
+            throw new IllegalArgumentException(name + " needs at least one level");
+        }
+        // Checks the name and the range.
+        base.with(name, min).with(name, max);
+        axes.add(new Axis(name, min, max, levels));
+    }
+
+    /**
+     * @return Every combination of the levels of the axes, the first axis
+     *         changing slowest.
+     */
+    public List<Parameters> grid()
+    {
+        List<Parameters> grid = new ArrayList<>();
+        grid.add(base);
+        for(Axis axis : axes) {
+            List<Parameters> next = new ArrayList<>();
+            for(Parameters parameters : grid) {
+                for(int level = 0; level < axis.levels; level++) {
+                    double fraction = axis.levels == 1 ? 0 : (double) level / (axis.levels - 1);
+                    next.add(parameters.with(axis.name, axis.at(fraction)));
+                }
+            }
+            grid = next;
+        }
+        return grid;
+    }
+
+    /**
+     * Sample the axes as a Latin hypercube.
+     * @param samples The number of sets of parameters to make.
+     * @param seed The seed the samples are drawn with.
+     * @return The sets of parameters.
+     */
+    public List<Parameters> latinHypercube(int samples, long seed)
+    {
+        SplittableRandom rand = new SplittableRandom(seed);
+        List<Parameters> sample = new ArrayList<>();
+        for(int n = 0; n < samples; n++) {
+            sample.add(base);
+        }
+        for(Axis axis : axes) {
+            // Give each sample a different stratum, in a random order.
+            int[] strata = new int[samples];
+            for(int n = 0; n < samples; n++) {
+                int other = rand.nextInt(n + 1);
+                strata[n] = strata[other];
+                strata[other] = n;
+            }
+            for(int n = 0; n < samples; n++) {
+                double fraction = (strata[n] + rand.nextDouble()) / samples;
+                sample.set(n, sample.get(n).with(axis.name, axis.at(fraction)));
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Run the simulation once for each set of parameters, and wait for
+     * every run to finish.
+     * @param sweep The sets of parameters, one per run.
+     * @param seed The seed the seeds of the runs are derived from.
+     * @param threads The number of runs to step at once.
+     * @param listener Given the summary of each run, in the order of the
+     *                 runs. Called on the thread that called this method.
+     */
+    public void run(List<Parameters> sweep, long seed, int threads, Consumer<Summary> listener)
+    {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+        // The summaries of the runs, in the order they finish, each worker
+        // ending with WORKER_DONE.
+        BlockingQueue<Summary> finished = new LinkedBlockingQueue<>();
+
+        // Each worker takes the next run not yet taken until none are left.
+        AtomicInteger nextToTake = new AtomicInteger();
+        int workers = Math.max(Math.min(threads, sweep.size()), 1);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(int n = 0; n < workers; n++) {
+            tasks.add(() -> {
+                try {
+                    Simulator sim = null;
+                    for(int run = nextToTake.getAndIncrement(); run < sweep.size();
+                            run = nextToTake.getAndIncrement()) {
+                        long runSeed = Randomizer.deriveSeed(seed, run);
+                        if(sim == null) {
+                            sim = new Simulator(depth, width, true, runSeed);
+                        }
+                        finished.add(runOne(sim, run, sweep.get(run), runSeed));
+                    }
+                }
+                finally {
+                    finished.add(Summary.WORKER_DONE);
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers, (task) -> {
+            Thread thread = new Thread(task, "sweep-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for(Callable<Void> task : tasks) {
+                results.add(pool.submit(task));
+            }
+            // Hand each summary on as soon as every run before it has been.
+            Map<Integer, Summary> waiting = new HashMap<>();
+            int nextRun = 0;
+            int working = workers;
+            while(working > 0) {
+                Summary summary = finished.take();
+                if(summary == Summary.WORKER_DONE) {
+                    working--;
+                    continue;
+                }
+                waiting.put(summary.getRun(), summary);
+                for(Summary next = waiting.remove(nextRun); next != null;
+                        next = waiting.remove(nextRun)) {
+                    listener.accept(next);
+                    nextRun++;
+                }
+            }
+            for(Future<Void> result : results) {
+                result.get();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the sweep", e);
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException("A run of the sweep failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reset a simulation with a run's parameters and seed, and run it
+     * until it stops being viable or has run every step.
+     * @return The summary of the run.
+     */
+    private Summary runOne(Simulator sim, int run, Parameters parameters, long seed)
+    {
+        sim.setParameters(parameters);
+        sim.setSeed(seed);
+        sim.reset();
+        double[] totals = new double[Species.COUNT];
+        while(sim.getStep() < steps && sim.getField().isViable()) {
+            sim.simulateOneStep();
+            for(int id = 0; id < Species.COUNT; id++) {
+                totals[id] += sim.getField().getCount(Species.byId(id));
+            }
+        }
+        int[] finalCount = new int[Species.COUNT];
+        for(int id = 0; id < Species.COUNT; id++) {
+            finalCount[id] = sim.getField().getCount(Species.byId(id));
+            totals[id] /= Math.max(sim.getStep(), 1);
+        }
+        return new Summary(run, parameters, sim.getStep(), finalCount, totals);
+    }
+
+    /**
+     * Run a sweep from the command line and print the summary of each run.
+     * @param args depth, width, number of steps, random seed, thread count,
+     *             mode and axes, as described above
+     */
+    public static void main(String[] args)
+    {
+        int depth, width, steps, threads;
+        long seed;
+        ParameterSweep sweep;
+        List<String> names = new ArrayList<>();
+        List<Parameters> runs;
+        try {
+            if(args.length < 7) {
+                throw new IllegalArgumentException("Too few arguments");
+            }
+            depth = intArgument(args[0], "depth", 1);
+            width = intArgument(args[1], "width", 1);
+            steps = intArgument(args[2], "steps", 1);
+            try {
+                seed = Long.parseLong(args[3]);
+            }
+            catch(NumberFormatException e) {
+                throw new IllegalArgumentException("seed must be a whole number, not " + args[3]);
+            }
+            threads = intArgument(args[4], "threads", 1);
+            String mode = args[5];
+
+            sweep = new ParameterSweep(depth, width, steps, Parameters.DEFAULTS);
+            for(int n = 6; n < args.length; n++) {
+                names.add(addAxis(sweep, args[n]));
+            }
+            if(mode.equals("grid")) {
+                runs = sweep.grid();
+            }
+            else if(mode.startsWith("lhs:")) {
+                runs = sweep.latinHypercube(intArgument(mode.substring(4), "samples", 1), seed);
+            }
+            else {
+                throw new IllegalArgumentException("The mode must be grid or lhs:samples, not " + mode);
+            }
+        }
+        catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.err.println("Parameters: " + Parameters.getNames());
+            System.exit(2);
+            return;
+        }
+
+        StringBuilder header = new StringBuilder("run");
+        for(String name : names) {
+            header.append(',').append(name);
+        }
+        header.append(",steps");
+        for(int id = 0; id < Species.COUNT; id++) {
+            Species species = Species.byId(id);
+            header.append(',').append(species).append("_final,").append(species).append("_mean");
+        }
+        System.out.println(header);
+
+        long start = System.nanoTime();
+        sweep.run(runs, seed, threads, (summary) -> {
+            StringBuilder line = new StringBuilder().append(summary.getRun());
+            for(String name : names) {
+                line.append(',').append(summary.getParameters().get(name));
+            }
+            line.append(',').append(summary.getSteps());
+            for(int id = 0; id < Species.COUNT; id++) {
+                Species species = Species.byId(id);
+                line.append(',').append(summary.getFinalCount(species))
+                    .append(',').append(String.format("%.1f", summary.getMeanCount(species)));
+            }
+            System.out.println(line);
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Ran %d configurations of up to %d steps on a %dx%d field in %.2f s%n",
+                          runs.size(), steps, depth, width, seconds);
+    }
+
+    /**
+     * Add an axis given on the command line to a sweep.
+     * @param sweep The sweep.
+     * @param arg The axis, as name=min:max or name=min:max:levels.
+     * @return The name of the parameter varied.
+     * @throws IllegalArgumentException If the axis is not written that
+     *         way or does not suit the parameter.
+     */
+    private static String addAxis(ParameterSweep sweep, String arg)
+    {
+        int equals = arg.indexOf('=');
+        String[] range = arg.substring(equals + 1).split(":", -1);
+        if(equals < 1 || range.length < 2 || range.length > 3) {
+            throw new IllegalArgumentException("An axis must be name=min:max[:levels], not " + arg);
+        }
+        String name = arg.substring(0, equals);
+        double min, max;
+        try {
+            min = Double.parseDouble(range[0]);
+            max = Double.parseDouble(range[1]);
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("The range of " + name + " must be two numbers, not "
+                                               + range[0] + ":" + range[1]);
+        }
+        int levels = range.length > 2 ? intArgument(range[2], name + " levels", 1) : 1;
+        sweep.addAxis(name, min, max, levels);
+        return name;
+    }
+
+    /**
+     * @return A whole-number argument.
+     * @throws IllegalArgumentException If it is not a number of at least min.
+     */
+    private static int intArgument(String arg, String name, int min)
+    {
+        int value;
+        try {
+            value = Integer.parseInt(arg);
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number, not " + arg);
+        }
+        if(value < min) {
+            throw new IllegalArgumentException(name + " must be at least " + min + ", not " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The tunable numbers of a simulation: how likely each species is to be
+ * placed in a cell when the field is populated, how likely each animal is
+ * to breed and how large its litters can be, how readily disease spreads,
+ * how readily plants spread, and whether hunters follow the scent of
+ * their prey.
+ *
+ * Parameters are immutable, so one set can be shared by any number of
+ * simulations on any number of threads. A changed set is made with with(),
+ * which finds the parameter by its name:
+ *     (species).creation   e.g. zebra.creation, plant.creation
+ *     (species).breeding   e.g. lion.breeding, for animals only
+ *     (species).litter     e.g. hyena.litter, for animals only
+ *     disease.spread
+ *     plant.spread
+ *     scent.follow         1 for hunters to follow scent, 0 to walk at random
+ * DEFAULTS holds the values the simulation was written with.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class Parameters
+{
+    // The parameters the simulation was written with.
+    public static final Parameters DEFAULTS = new Parameters();
+
+    private static final String DISEASE_SPREAD = "disease.spread";
+    private static final String PLANT_SPREAD = "plant.spread";
+    private static final String SCENT_FOLLOW = "scent.follow";
+    // The name of every parameter, in a fixed order.
+    private static final List<String> NAMES = listNames();
+
+    // The probability of placing each species in a cell, by id.
+    private final double[] creationProbability;
+    // The breeding probability and largest litter of each species, by id.
+    private final double[] breedingProbability;
+    private final int[] maxLitterSize;
+    private final double diseaseSpread;
+    private final double plantSpreadChance;
+    private final boolean scentFollowing;
+
+    /**
+     * Create the default parameters.
+     */
+    private Parameters()
+    {
+        creationProbability = new double[Species.COUNT];
+        creationProbability[Species.HYENA.getId()] = 0.03;
+        creationProbability[Species.ZEBRA.getId()] = 0.15;
+        creationProbability[Species.GIRAFFE.getId()] = 0.05;
+        creationProbability[Species.LION.getId()] = 0.02;
+        creationProbability[Species.PLANT.getId()] = 0.15;
+        breedingProbability = new double[Species.COUNT];
+        maxLitterSize = new int[Species.COUNT];
+        for(int id = 0; id < Species.COUNT; id++) {
+            breedingProbability[id] = Species.byId(id).getBreedingProbability();
+            maxLitterSize[id] = Species.byId(id).getMaxLitterSize();
+        }
+        diseaseSpread = Disease.DISEASE_SPREAD;
+        plantSpreadChance = Vegetation.SPREAD_CHANCE;
+        // Following scent thins out the prey far faster than the random walk
+        // the populations were balanced for, so it is off unless asked for.
+        scentFollowing = false;
+    }
+
+    /**
+     * Create parameters from their parts, which are not copied.
+     */
+    private Parameters(double[] creationProbability, double[] breedingProbability,
+                       int[] maxLitterSize, double diseaseSpread, double plantSpreadChance,
+                       boolean scentFollowing)
+    {
+        this.creationProbability = creationProbability;
+        this.breedingProbability = breedingProbability;
+        this.maxLitterSize = maxLitterSize;
+        this.diseaseSpread = diseaseSpread;
+        this.plantSpreadChance = plantSpreadChance;
+        this.scentFollowing = scentFollowing;
+    }
+
+    /**
+     * @return The name of every parameter.
+     */
+    public static List<String> getNames()
+    {
+        return NAMES;
+    }
+
+    /**
+     * @return The probability that a species is placed in a given cell
+     *         when the field is populated.
+     */
+    public double getCreationProbability(Species species)
+    {
+        return creationProbability[species.getId()];
+    }
+
+    /**
+     * @return The likelihood of an animal of a species breeding in a step.
+     */
+    public double getBreedingProbability(Species species)
+    {
+        return breedingProbability[species.getId()];
+    }
+
+    /**
+     * @return The largest litter an animal of a species can have.
+     */
+    public int getMaxLitterSize(Species species)
+    {
+        return maxLitterSize[species.getId()];
+    }
+
+    /**
+     * @return The chance a diseased animal passes the disease to each
+     *         neighbour in a step.
+     */
+    public double getDiseaseSpread()
+    {
+        return diseaseSpread;
+    }
+
+    /**
+     * @return The chance a plant spreads to its neighbours in one step, in
+     *         dry weather.
+     */
+    public double getPlantSpreadChance()
+    {
+        return plantSpreadChance;
+    }
+
+    /**
+     * @return true if hunters move towards the scent of their prey when
+     *         they find nothing to eat, false if they move at random.
+     */
+    public boolean isScentFollowing()
+    {
+        return scentFollowing;
+    }
+
+    /**
+     * Look up a parameter by name.
+     * @param name The name of the parameter.
+     * @return Its value.
+     * @throws IllegalArgumentException If there is no parameter of that name.
+     */
+    public double get(String name)
+    {
+        switch(name) {
+            case DISEASE_SPREAD:
+                return diseaseSpread;
+            case PLANT_SPREAD:
+                return plantSpreadChance;
+            case SCENT_FOLLOW:
+                return scentFollowing ? 1 : 0;
+        }
+        Species species = speciesOf(name);
+        switch(name.substring(name.indexOf('.') + 1)) {
+            case "creation":
+                return creationProbability[species.getId()];
+            case "breeding":
+                return breedingProbability[species.getId()];
+            default:
+                return maxLitterSize[species.getId()];
+        }
+    }
+
+    /**
+     * Make a copy of these parameters with one of them changed.
+     * @param name The name of the parameter.
+     * @param value Its new value: a probability from 0 to 1, or for a
+     *              litter size a number of at least 1, which is rounded.
+     *              scent.follow takes 0 or 1, and any other value is
+     *              rounded to the nearer of them.
+     * @return The changed parameters.
+     * @throws IllegalArgumentException If there is no parameter of that
+     *         name or the value is out of range.
+     */
+    public Parameters with(String name, double value)
+    {
+        double[] creation = creationProbability;
+        double[] breeding = breedingProbability;
+        int[] litter = maxLitterSize;
+        double disease = diseaseSpread;
+        double plants = plantSpreadChance;
+        boolean scent = scentFollowing;
+        if(!NAMES.contains(name)) {
+            throw new IllegalArgumentException("No parameter called " + name
+                                               + "; the parameters are " + NAMES);
+        }
+        if(name.endsWith(".litter")) {
+            if(!(value >= 1) || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(name + " must be at least 1, not " + value);
+            }
+        }
+        else if(!(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException(name + " must be from 0 to 1, not " + value);
+        }
+
+        if(name.equals(DISEASE_SPREAD)) {
+            disease = value;
+        }
+        else if(name.equals(PLANT_SPREAD)) {
+            plants = value;
+        }
+        else if(name.equals(SCENT_FOLLOW)) {
+            scent = value >= 0.5;
+        }
+        else {
+            int id = speciesOf(name).getId();
+            switch(name.substring(name.indexOf('.') + 1)) {
+                case "creation":
+                    creation = creation.clone();
+                    creation[id] = value;
+                    break;
+                case "breeding":
+                    breeding = breeding.clone();
+                    breeding[id] = value;
+                    break;
+                default:
+                    litter = litter.clone();
+                    litter[id] = (int) Math.round(value);
+                    break;
+            }
+        }
+        return new Parameters(creation, breeding, litter, disease, plants, scent);
+    }
+
+    /**
+     * @return The species a parameter belongs to.
+     * @throws IllegalArgumentException If there is no parameter of that name.
+     */
+    private static Species speciesOf(String name)
+    {
+        if(NAMES.contains(name)) {
+            String prefix = name.substring(0, name.indexOf('.'));
+            for(int id = 0; id < Species.COUNT; id++) {
+                if(Species.byId(id).toString().equalsIgnoreCase(prefix)) {
+                    return Species.byId(id);
+                }
+            }
+        }
+        throw new IllegalArgumentException("No parameter called " + name
+                                           + "; the parameters are " + NAMES);
+    }
+
+    /**
+     * @return The names of every parameter, in a fixed order.
+     */
+    private static List<String> listNames()
+    {
+        List<String> names = new ArrayList<>();
+        for(int id = 0; id < Species.COUNT; id++) {
+            String species = Species.byId(id).toString().toLowerCase();
+            names.add(species + ".creation");
+            if(Species.byId(id).getMaxLitterSize() > 0) {
+                names.add(species + ".breeding");
+                names.add(species + ".litter");
+            }
+        }
+        names.add(DISEASE_SPREAD);
+        names.add(PLANT_SPREAD);
+        names.add(SCENT_FOLLOW);
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @return Every parameter as name=value, in the order of getNames.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        for(String name : NAMES) {
+            if(text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(name).append('=').append(get(name));
+        }
+        return text.toString();
+    }
+}
@@ -1,21 +1,27 @@
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 /**
- * Provide control over the randomization of the simulation. By using the shared, fixed-seed 
- * randomizer, repeated runs will perform exactly the same (which helps with testing). Set 
- * 'useShared' to false to get different random behaviour every time.
- * 
+ * Provide control over the randomization of the simulation. Every random draw comes from
+ * a stream derived from the simulation's seed, so repeated runs with the same seed perform
+ * exactly the same (which helps with testing).
+ *
+ * Each thread draws from its own current stream, set with use(). The simulator derives a
+ * fresh stream for every step, and the tiled engine one for every tile of every step, so
+ * the results do not depend on how many threads run the tiles or in which order.
+ *
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
  */
 public class Randomizer
 {
     // The default seed for control of randomization.
-    private static final int SEED = 1111;
-    // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
-    // Determine whether a shared random generator is to be provided.
-    private static final boolean useShared = true;
+    public static final long SEED = 1111;
+    // An odd constant used to spread keys apart before mixing.
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    // The stream each thread is currently drawing from.
+    private static final ThreadLocal<RandomGenerator> current =
+        ThreadLocal.withInitial(() -> new SplittableRandom(SEED));
 
     /**
      * Constructor for objects of class Randomizer
@@ -25,28 +31,54 @@ public class Randomizer
     }
 
     /**
-     * Provide a random generator.
-     * @return A random object.
+     * Provide the random generator for the calling thread.
+     * It must not be kept: the stream changes every step.
+     * @return A random generator.
      */
-    public static Random getRandom()
+    public static RandomGenerator getRandom()
     {
-        if(useShared) {
-            return rand;
-        }
-        else {
-            return new Random();
-        }
+        return current.get();
     }
-    
+
+    /**
+     * Make the calling thread draw from the given stream.
+     * @param stream The stream to draw from.
+     */
+    public static void use(RandomGenerator stream)
+    {
+        current.set(stream);
+    }
+
+    /**
+     * Create the stream for one key under a seed, for example one step
+     * under the simulation seed, or one tile under a step's seed.
+     * @param seed The parent seed.
+     * @param key Identifies the stream under the parent seed.
+     * @return A new stream; the same seed and key always give the same stream.
+     */
+    public static SplittableRandom stream(long seed, long key)
+    {
+        return new SplittableRandom(deriveSeed(seed, key));
+    }
+
+    /**
+     * Derive a child seed for a key under a parent seed.
+     * @param seed The parent seed.
+     * @param key Identifies the child.
+     * @return The child seed.
+     */
+    public static long deriveSeed(long seed, long key)
+    {
+        return mix(seed + GOLDEN_GAMMA * (key + 1));
+    }
+
     /**
-     * Reset the randomization.
-     * This will have no effect if randomization is not 
-     * through a shared Random generator.
+     * Scramble the bits of a value (the finaliser of SplitMix64).
      */
-    public static void reset()
+    private static long mix(long z)
     {
-        if(useShared) {
-            rand.setSeed(SEED);
-        }
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
     }
 }
@@ -0,0 +1,136 @@
+/**
+ * Measures how the step time scales with the number of step threads, by
+ * running the same simulation with the serial engine and then with the
+ * tiled engine on each thread count in turn.
+ *
+ * Usage: java ScalingReport [depth] [width] [steps] [seed] [threads...]
+ * The thread counts default to 1 2 4 8 16. Each run starts from the same
+ * seed. Before any run is timed, both engines are run untimed for
+ * WARMUP_STEPS steps, so that the first run timed is not slowed down by
+ * the JIT compiling code the later runs share.
+ *
+ * One row is printed per run: the steps per second, the speed-up over the
+ * serial engine and over the tiled engine on one thread, and the final
+ * population. The tiled runs all finish with the same population whatever
+ * the thread count. The report also gives the number of processors, since
+ * thread counts above it cannot be expected to scale.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class ScalingReport
+{
+    // Defaults used for any argument that is not given.
+    private static final int DEFAULT_DEPTH = 1000;
+    private static final int DEFAULT_WIDTH = 1000;
+    private static final int DEFAULT_STEPS = 100;
+    private static final long DEFAULT_SEED = 1111;
+    private static final int[] DEFAULT_THREADS = {1, 2, 4, 8, 16};
+    // The steps each engine runs before timing starts.
+    private static final int WARMUP_STEPS = 20;
+    private static final String USAGE =
+        "Usage: java ScalingReport [depth] [width] [steps] [seed] [threads...]";
+
+    /**
+     * Run the report.
+     * @param args depth, width, number of timed steps, random seed and the
+     *             thread counts to try, all optional
+     */
+    public static void main(String[] args)
+    {
+        int depth, width, steps;
+        long seed;
+        int[] threadCounts = DEFAULT_THREADS;
+        try {
+            depth = args.length > 0 ? positive(args[0], "depth") : DEFAULT_DEPTH;
+            width = args.length > 1 ? positive(args[1], "width") : DEFAULT_WIDTH;
+            steps = args.length > 2 ? positive(args[2], "steps") : DEFAULT_STEPS;
+            seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+            if(args.length > 4) {
+                threadCounts = new int[args.length - 4];
+                for(int i = 0; i < threadCounts.length; i++) {
+                    threadCounts[i] = positive(args[i + 4], "threads");
+                }
+            }
+        }
+        catch(NumberFormatException e) {
+            System.err.println("Arguments must be whole numbers: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        System.out.printf("%dx%d field, %d timed steps, seed %d, %d processors%n",
+                          depth, width, steps, seed,
+                          Runtime.getRuntime().availableProcessors());
+        for(int threads : new int[] {0, threadCounts[threadCounts.length - 1]}) {
+            Simulator sim = new Simulator(depth, width, true, seed);
+            sim.setThreads(threads);
+            sim.simulate(WARMUP_STEPS);
+            sim.setThreads(0);
+        }
+        System.out.println("threads,steps/s,vs serial,vs 1 thread,population");
+        double serial = report("serial", 0, depth, width, steps, seed, 0, 0);
+        double oneThread = 0;
+        for(int threads : threadCounts) {
+            double rate = report(Integer.toString(threads), threads, depth, width, steps,
+                                 seed, serial, oneThread);
+            if(threads == 1) {
+                oneThread = rate;
+            }
+        }
+    }
+
+    /**
+     * Time one run and print its row.
+     * @param label The name of the run in the report.
+     * @param threads The number of step threads, 0 for the serial engine.
+     * @param serial The steps per second of the serial engine, or 0.
+     * @param oneThread The steps per second of the tiled engine on one
+     *                  thread, or 0 if it has not been run.
+     * @return The steps per second of this run.
+     */
+    private static double report(String label, int threads, int depth, int width, int steps,
+                                 long seed, double serial, double oneThread)
+    {
+        Simulator sim = new Simulator(depth, width, true, seed);
+        sim.setThreads(threads);
+        int firstStep = sim.getStep();
+        long start = System.nanoTime();
+        sim.simulate(steps);
+        // The run stops early if the field is no longer viable.
+        double rate = (sim.getStep() - firstStep) / ((System.nanoTime() - start) / 1e9);
+        sim.setThreads(0);
+        System.out.printf("%s,%.2f,%s,%s,%s%n", label, rate, ratio(rate, serial),
+                          ratio(rate, oneThread),
+                          new FieldStats().getPopulationDetails(sim.getField()).trim());
+        return rate;
+    }
+
+    /**
+     * @return rate / base to two places, or a dash if there is no base.
+     */
+    private static String ratio(double rate, double base)
+    {
+        return base > 0 ? String.format("%.2f", rate / base) : "-";
+    }
+
+    /**
+     * @return The argument as a number of at least 1.
+     * @throws IllegalArgumentException If it is not.
+     */
+    private static int positive(String arg, String name)
+    {
+        int value = Integer.parseInt(arg);
+        if(value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1, not " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,341 @@
+import java.util.Arrays;
+
+/**
+ * The scent of prey across the field, one grid per predator diet. Every
+ * prey animal gives off a scent of 1 that fades by SCENT_DECAY for each cell
+ * it spreads, so the scent at a cell adds up the prey around it, weighted
+ * by how close they are. A predator with no prey beside it can follow the
+ * scent uphill by comparing the cells around it.
+ *
+ * Spreading is done with four recursive sweeps over each grid (right,
+ * left, down and up), which gives the same result as adding up a fading
+ * kernel around every prey but costs the same however far the scent
+ * carries.
+ *
+ * Like the density map, the grids are built once per step from the field
+ * as it stands before anyone acts, and are kept in the same square chunks
+ * as the field's actors (see ChunkedCells). Scent never carries as far as
+ * a chunk, so a grid only needs the chunks holding prey and the eight
+ * around each of them; the rest are left unallocated and read as no scent.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class ScentMap
+{
+    // How much of the scent carries from one cell to the next.
+    public static final float SCENT_DECAY = 0.7f;
+    // Scent fainter than this is dropped. This limits the reach of a single
+    // prey to about 25 cells, and of any crowd of prey to under 40, so no
+    // scent reaches the chunk beyond the next. It also keeps the sweeps away
+    // from the subnormal floats that the scent would otherwise fade into,
+    // which are very slow.
+    private static final float MIN_SCENT = 1e-4f;
+    // The diet bit of plants, which give off no scent.
+    private static final int PLANT_MASK = 1 << Species.PLANT.getId();
+
+    private static final int SIZE = ChunkedCells.CHUNK_SIZE;
+    private static final int MASK = SIZE - 1;
+
+    private final int depth, width;
+    // The number of chunks across and down the field.
+    private final int chunksAcross, chunksDown;
+    // The grid each species follows, or -1 if it does not hunt.
+    private final int[] gridOf = new int[Species.COUNT];
+    // The prey each grid tracks, as a diet bitmask.
+    private final int[] gridPrey;
+    // The scent of each grid, by chunk and then by cell within the chunk.
+    // A grid is null until it is first needed, and a chunk is null where
+    // no prey is near enough to give it any scent.
+    private final float[][][] grids;
+    // Whether each grid was built this step.
+    private final boolean[] built;
+    // Whether each chunk holds prey of a grid being built, while building.
+    private final boolean[] hasPrey;
+    // The scent carried up from the rows below, while spreading.
+    private final float[] below;
+    // Whether each row has any prey in it; the other rows only get scent from above and below.
+    private final boolean[] markedRows;
+
+    /**
+     * Create the grids for a field of the given size. Predators with the
+     * same diet share a grid.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public ScentMap(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        chunksAcross = ChunkedCells.chunksAcross(width);
+        chunksDown = ChunkedCells.chunksDown(depth);
+        int[] prey = new int[Species.COUNT];
+        int count = 0;
+        for(int id = 0; id < Species.COUNT; id++) {
+            int diet = Species.byId(id).getPreyMask() & ~PLANT_MASK;
+            gridOf[id] = -1;
+            if(diet == 0) {
+                continue;
+            }
+            for(int grid = 0; grid < count && gridOf[id] < 0; grid++) {
+                if(prey[grid] == diet) {
+                    gridOf[id] = grid;
+                }
+            }
+            if(gridOf[id] < 0) {
+                prey[count] = diet;
+                gridOf[id] = count++;
+            }
+        }
+        gridPrey = Arrays.copyOf(prey, count);
+        grids = new float[count][][];
+        built = new boolean[count];
+        hasPrey = new boolean[chunksAcross * chunksDown];
+        below = new float[width];
+        markedRows = new boolean[depth];
+    }
+
+    /**
+     * Rebuild the grids from the prey in a field. A grid is only built if
+     * one of the predators following it is in the field, and some of its
+     * prey are too.
+     * @param field The field to read, of the size given when the map was created.
+     */
+    public void build(Field field)
+    {
+        Arrays.fill(built, false);
+        for(int id = 0; id < Species.COUNT; id++) {
+            int grid = gridOf[id];
+            if(grid >= 0 && !built[grid] && field.getCount(Species.byId(id)) > 0
+                    && hasPrey(field, gridPrey[grid])) {
+                built[grid] = true;
+            }
+        }
+        for(int grid = 0; grid < grids.length; grid++) {
+            if(built[grid]) {
+                if(grids[grid] == null) {
+                    grids[grid] = new float[hasPrey.length][];
+                }
+                build(field, grid);
+            }
+            else {
+                // Give back the space of a grid that is not needed this step.
+                grids[grid] = null;
+            }
+        }
+    }
+
+    /**
+     * Mark the prey of one grid and spread their scent.
+     */
+    private void build(Field field, int grid)
+    {
+        float[][] chunks = grids[grid];
+        Arrays.fill(hasPrey, false);
+        Arrays.fill(markedRows, false);
+        for(Actor actor : field.getActors()) {
+            if(actor.isActive() && (gridPrey[grid] & (1 << actor.getSpecies().getId())) != 0) {
+                Location location = actor.getLocation();
+                hasPrey[chunkOf(location.row(), location.col())] = true;
+            }
+        }
+        for(int n = 0; n < chunks.length; n++) {
+            if(nearPrey(n / chunksAcross, n % chunksAcross)) {
+                if(chunks[n] == null) {
+                    chunks[n] = new float[SIZE * SIZE];
+                }
+                else {
+                    Arrays.fill(chunks[n], 0);
+                }
+            }
+            else {
+                chunks[n] = null;
+            }
+        }
+        for(Actor actor : field.getActors()) {
+            if(actor.isActive() && (gridPrey[grid] & (1 << actor.getSpecies().getId())) != 0) {
+                Location location = actor.getLocation();
+                chunks[chunkOf(location.row(), location.col())]
+                      [ChunkedCells.offset(location.row(), location.col())] = 1;
+                markedRows[location.row()] = true;
+            }
+        }
+        spread(chunks);
+    }
+
+    /**
+     * @return true if the chunk at the given position or one of the eight
+     *         around it holds prey.
+     */
+    private boolean nearPrey(int chunkRow, int chunkCol)
+    {
+        int lastRow = Math.min(chunkRow + 1, chunksDown - 1);
+        int lastCol = Math.min(chunkCol + 1, chunksAcross - 1);
+        for(int r = Math.max(chunkRow - 1, 0); r <= lastRow; r++) {
+            for(int c = Math.max(chunkCol - 1, 0); c <= lastCol; c++) {
+                if(hasPrey[r * chunksAcross + c]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the field holds any of the prey in the given diet.
+     */
+    private static boolean hasPrey(Field field, int diet)
+    {
+        for(int id = 0; id < Species.COUNT; id++) {
+            if((diet & (1 << id)) != 0 && field.getCount(Species.byId(id)) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param predator A species.
+     * @return true if the map has a scent for that species to follow.
+     */
+    public boolean tracks(Species predator)
+    {
+        int grid = gridOf[predator.getId()];
+        return grid >= 0 && built[grid];
+    }
+
+    /**
+     * @param predator A species that the map tracks.
+     * @param row The row in the field.
+     * @param col The column in the field.
+     * @return The scent of that species' prey at the given position.
+     */
+    public float getScent(Species predator, int row, int col)
+    {
+        float[] chunk = grids[gridOf[predator.getId()]][chunkOf(row, col)];
+        return chunk == null ? 0 : chunk[ChunkedCells.offset(row, col)];
+    }
+
+    /**
+     * Spread the marks in a grid. Along a line, the scent at cell i is the
+     * sum over every cell j of mark(j) * SCENT_DECAY^|i - j|. A forward sweep
+     * carries the marks of the cells before each cell, and a backward sweep
+     * then adds those of the cells after it, working each mark back out of
+     * the forward sums as it goes. Rows are done first and then columns;
+     * the columns are swept a whole row of a chunk at a time so memory is
+     * read in order. Nothing carries across a missing chunk, as no scent
+     * reaches that far.
+     */
+    private void spread(float[][] chunks)
+    {
+        for(int row = 0; row < depth; row++) {
+            if(markedRows[row]) {
+                spreadRow(chunks, row);
+            }
+        }
+
+        // Down each column of chunks...
+        for(int chunkRow = 0; chunkRow < chunksDown; chunkRow++) {
+            int rows = Math.min(SIZE, depth - chunkRow * SIZE);
+            for(int chunkCol = 0; chunkCol < chunksAcross; chunkCol++) {
+                float[] chunk = chunks[chunkRow * chunksAcross + chunkCol];
+                if(chunk == null) {
+                    continue;
+                }
+                float[] above = chunkRow > 0 ? chunks[(chunkRow - 1) * chunksAcross + chunkCol] : null;
+                int cols = Math.min(SIZE, width - chunkCol * SIZE);
+                // The top row of the field has nothing above to add.
+                for(int r = chunkRow > 0 ? 0 : 1; r < rows; r++) {
+                    for(int c = 0; c < cols; c++) {
+                        int index = r * SIZE + c;
+                        float carried = r > 0 ? chunk[index - SIZE]
+                                              : above == null ? 0 : above[(SIZE - 1) * SIZE + c];
+                        chunk[index] = fade(chunk[index] + SCENT_DECAY * carried);
+                    }
+                }
+            }
+        }
+        // ...and back up them.
+        Arrays.fill(below, 0);
+        for(int chunkRow = chunksDown - 1; chunkRow >= 0; chunkRow--) {
+            int rows = Math.min(SIZE, depth - chunkRow * SIZE);
+            for(int chunkCol = 0; chunkCol < chunksAcross; chunkCol++) {
+                float[] chunk = chunks[chunkRow * chunksAcross + chunkCol];
+                int firstCol = chunkCol * SIZE;
+                int cols = Math.min(SIZE, width - firstCol);
+                if(chunk == null) {
+                    Arrays.fill(below, firstCol, firstCol + cols, 0);
+                    continue;
+                }
+                float[] above = chunkRow > 0 ? chunks[(chunkRow - 1) * chunksAcross + chunkCol] : null;
+                for(int r = rows - 1; r >= 0; r--) {
+                    for(int c = 0; c < cols; c++) {
+                        int index = r * SIZE + c;
+                        float forward = chunk[index];
+                        float before = r > 0 ? chunk[index - SIZE]
+                                             : above == null ? 0 : above[(SIZE - 1) * SIZE + c];
+                        float own = forward - (chunkRow > 0 || r > 0 ? SCENT_DECAY * before : 0);
+                        chunk[index] = forward + SCENT_DECAY * below[firstCol + c];
+                        below[firstCol + c] = fade(own + SCENT_DECAY * below[firstCol + c]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Spread the marks along one row, across every chunk of it.
+     */
+    private void spreadRow(float[][] chunks, int row)
+    {
+        int chunkRowStart = (row >>> ChunkedCells.CHUNK_BITS) * chunksAcross;
+        int rowStart = (row & MASK) * SIZE;
+        float carried = 0;
+        for(int chunkCol = 0; chunkCol < chunksAcross; chunkCol++) {
+            float[] chunk = chunks[chunkRowStart + chunkCol];
+            if(chunk == null) {
+                carried = 0;
+                continue;
+            }
+            int cols = Math.min(SIZE, width - chunkCol * SIZE);
+            for(int c = 0; c < cols; c++) {
+                carried = fade(chunk[rowStart + c] + SCENT_DECAY * carried);
+                chunk[rowStart + c] = carried;
+            }
+        }
+        float after = 0;
+        for(int chunkCol = chunksAcross - 1; chunkCol >= 0; chunkCol--) {
+            float[] chunk = chunks[chunkRowStart + chunkCol];
+            if(chunk == null) {
+                after = 0;
+                continue;
+            }
+            float[] left = chunkCol > 0 ? chunks[chunkRowStart + chunkCol - 1] : null;
+            int cols = Math.min(SIZE, width - chunkCol * SIZE);
+            for(int c = cols - 1; c >= 0; c--) {
+                float forward = chunk[rowStart + c];
+                float before = c > 0 ? chunk[rowStart + c - 1]
+                                     : left == null ? 0 : left[rowStart + SIZE - 1];
+                float own = forward - SCENT_DECAY * before;
+                chunk[rowStart + c] = forward + SCENT_DECAY * after;
+                after = fade(own + SCENT_DECAY * after);
+            }
+        }
+    }
+
+    /**
+     * @return The given scent, or 0 if it is too faint to keep.
+     */
+    private static float fade(float scent)
+    {
+        return scent < MIN_SCENT ? 0 : scent;
+    }
+
+    /**
+     * @return The number of the chunk holding a cell.
+     */
+    private int chunkOf(int row, int col)
+    {
+        return (row >>> ChunkedCells.CHUNK_BITS) * chunksAcross + (col >>> ChunkedCells.CHUNK_BITS);
+    }
+}
@@ -1,5 +1,8 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Function;
+import java.util.random.RandomGenerator;
  
 /**
  * A simple predator-prey simulator, based on a rectangular field containing 
@@ -15,20 +18,51 @@ public class Simulator
     private static final int DEFAULT_WIDTH = 120;
     // The default depth of the grid.
     private static final int DEFAULT_DEPTH = 80;
-    // The probability that each actor will be created in any given grid position.
-    private static final double HYENA_CREATION_PROBABILITY = 0.03;
-    private static final double ZEBRA_CREATION_PROBABILITY = 0.15;
-    private static final double GIRAFFE_CREATION_PROBABILITY = 0.05;
-    private static final double LION_CREATION_PROBABILITY = 0.02;
-    private static final double PLANT_CREATION_PROBABILITY = 0.15;
+    // Keys of the random streams under the seed that are not tied to a step.
+    private static final long ENVIRONMENT_STREAM = -1;
+    private static final long POPULATE_STREAM = -2;
+    // Key of the stream under each step's seed that plants spread with.
+    private static final long VEGETATION_STREAM = -1;
+    // Key of the seed under each step's seed that the disease phase's bands derive their streams from.
+    private static final long DISEASE_STREAM = -2;
+    // The species populate tries for each cell, in order.
+    private static final Species[] POPULATE_ORDER = {
+        Species.HYENA, Species.ZEBRA, Species.GIRAFFE, Species.LION, Species.PLANT
+    };
 
 
     // The current state of the field.
     private Field field;
+    // The buffer the next state is built in. It swaps with field every step.
+    private Field nextFieldState;
     // The current environment of the simulation.
     private Environment env;
-    // A graphical view of the simulation.
+    // The number of steps run since the last reset.
+    private int step;
+    // The seed every random stream in the simulation is derived from.
+    private long seed;
+    // The creation probabilities, species traits and spread chances.
+    private Parameters parameters = Parameters.DEFAULTS;
+    // A graphical view of the simulation, or null when running headless.
     private final SimulatorView view;
+    // Whether each step records which cells changed, so that only they are
+    // redrawn. Always on with a view.
+    private boolean recordingChanges;
+    // The parallel step engine, or null to step on the calling thread.
+    private TiledStepper stepper;
+    // The data-oriented store for animal state, or null to keep it in the animals.
+    private AnimalStore animalStore;
+    // Counts of the animals ready to breed, rebuilt at the start of each step.
+    private final DensityMap densityMap;
+    // The scent of prey for hunters to follow, rebuilt at the start of each
+    // step when the parameters turn scent-following on.
+    private final ScentMap scentMap;
+    // The disease phase, run at the start of each step.
+    private final Disease disease;
+    // Where a row of statistics is written after each step, or null.
+    private TimeSeriesWriter timeSeries;
+    // The timings of each phase of a step, off unless switched on.
+    private final StepMetrics metrics = new StepMetrics();
 
     /**
      * Construct a simulation field with default size.
@@ -44,6 +78,49 @@ public class Simulator
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int depth, int width)
+    {
+        this(depth, width, false);
+    }
+
+    /**
+     * Create a simulation field with the given size, optionally without
+     * any graphical view. A headless simulator never touches AWT or Swing
+     * and runs steps back to back with no delay.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param headless true to run without a view.
+     */
+    public Simulator(int depth, int width, boolean headless)
+    {
+        this(depth, width, headless, Randomizer.SEED);
+    }
+
+    /**
+     * Create a simulation field with the given size and random seed.
+     * Two simulations with the same size and seed produce identical runs,
+     * whichever step engine and however many threads they use.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param headless true to run without a view.
+     * @param seed The seed for every random choice in the simulation.
+     */
+    public Simulator(int depth, int width, boolean headless, long seed)
+    {
+        this(depth, width, headless, seed, Parameters.DEFAULTS);
+    }
+
+    /**
+     * Create a simulation field with the given size, random seed and
+     * parameters. The field is populated with the parameters' creation
+     * probabilities, so a large field can be created sparsely populated
+     * without first being filled with the defaults.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param headless true to run without a view.
+     * @param seed The seed for every random choice in the simulation.
+     * @param parameters The parameters of the simulation.
+     */
+    public Simulator(int depth, int width, boolean headless, long seed, Parameters parameters)
     {
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be >= zero.");
@@ -52,8 +129,19 @@ public class Simulator
             width = DEFAULT_WIDTH;
         }
         
+        this.seed = seed;
         field = new Field(depth, width);
-        view = new SimulatorView(depth, width);
+        nextFieldState = new Field(depth, width);
+        densityMap = new DensityMap(depth, width);
+        scentMap = new ScentMap(depth, width);
+        disease = new Disease(depth, width);
+        setParameters(parameters);
+        view = headless ? null : new SimulatorView(depth, width);
+        recordingChanges = view != null;
+        if(view != null) {
+            // Let the step timings be switched on and read from JConsole.
+            metrics.register("view");
+        }
 
         reset();
     }
@@ -87,33 +175,98 @@ public class Simulator
         // Don't need to report stats, already reported in the gui
         // reportStats();
         for(int n = 1; n <= numSteps && field.isViable(); n++) {
+            if(view != null && !view.getStepControl().awaitStep()) {
+                return;
+            }
             simulateOneStep();
-            delay(50);         // adjust this to change execution speed
+            if(view != null && !view.getStepControl().isPaused()) {
+                delay(view.getStepControl().getDelay());   // set with the view's speed slider
+            }
         }
     }
     
     /**
      * Run the simulation from its current state for a single step.
      * Iterate over the whole field updating the state of each Actor.
+     * 
+     * The two Field buffers are reused from step to step, so the field
+     * handed to the view is only valid until the next call of this method.
+     * Readers must copy anything they need out of it during showStatus
+     * and must not keep the Field or its actor list.
      */
     public void simulateOneStep()
     {
+        StepEvent event = new StepEvent();
+        event.begin();
+        int animalsBefore = field.getAnimalCount();
+        metrics.beginStep();
+        metrics.begin(StepMetrics.Phase.PREPARE);
+        step++;
         env.incrementTime();
-        // Use a separate Field to store the starting state of
-        // the next step.
-        Field nextFieldState = new Field(field.getDepth(), field.getWidth());
+        // Build the starting state of the next step in the spare buffer.
+        // Clearing keeps its capacity from the step before.
+        nextFieldState.clear();
 
-        List<Actor> Actors = field.getActors();
-        for (Actor anActor : Actors) { 
-            anActor.act(field, nextFieldState, env);
+        if (animalStore != null) {
+            metrics.begin(StepMetrics.Phase.AGE);
+            animalStore.ageAndHunger();
+        }
+        long stepSeed = Randomizer.deriveSeed(seed, step);
+        metrics.begin(StepMetrics.Phase.DISEASE);
+        disease.spread(field, Randomizer.deriveSeed(stepSeed, DISEASE_STREAM), stepper);
+        metrics.begin(StepMetrics.Phase.DENSITY_MAP);
+        field.useDensityMap(densityMap);
+        if (parameters.isScentFollowing()) {
+            metrics.begin(StepMetrics.Phase.SCENT_MAP);
+            field.useScentMap(scentMap);
+        }
+        field.useMetrics(metrics.isRecording() ? metrics : null);
+        metrics.begin(StepMetrics.Phase.ACT);
+        if (stepper != null) {
+            stepper.step(field, nextFieldState, env, stepSeed);
+        }
+        else {
+            Randomizer.use(new SplittableRandom(stepSeed));
+            List<Actor> Actors = field.getActors();
+            for (Actor anActor : Actors) { 
+                anActor.act(field, nextFieldState, env);
+            }
+        }
+        metrics.begin(StepMetrics.Phase.PLANTS);
+        nextFieldState.growPlants(field, parameters.getPlantSpreadChance() * env.getRainMultiplier(),
+                                  Randomizer.stream(stepSeed, VEGETATION_STREAM));
+        if(recordingChanges) {
+            // Let the view redraw only the cells that changed.
+            metrics.begin(StepMetrics.Phase.CHANGES);
+            nextFieldState.recordChanges(field);
         }
         
-        // Replace the old state with the new one.
+        // Swap the buffers: the new state becomes current and the old one
+        // is kept to be cleared and reused next step.
+        Field oldFieldState = field;
         field = nextFieldState;
+        nextFieldState = oldFieldState;
 
+        if(timeSeries != null) {
+            metrics.begin(StepMetrics.Phase.STATISTICS);
+            timeSeries.record(step, env, field);
+        }
         // Don't need to report stats, already in the gui
         // reportStats();
-        view.showStatus(env.getEnvString(), field);
+        if(view != null) {
+            metrics.begin(StepMetrics.Phase.VIEW);
+            view.showStatus(env.getEnvString(), field);
+        }
+        metrics.endStep(step);
+        if(event.shouldCommit()) {
+            event.step = step;
+            event.animalsBefore = animalsBefore;
+            event.animalsAfter = field.getAnimalCount();
+            event.plants = field.getCount(Species.PLANT);
+            event.time = env.getTime();
+            event.weather = env.getWeather().toString();
+            event.commit();
+        }
     }
         
     /**
@@ -121,42 +274,288 @@ public class Simulator
      */
     public void reset()
     {
-        env = new Environment();
+        step = 0;
+        env = new Environment(Randomizer.deriveSeed(seed, ENVIRONMENT_STREAM));
+        nextFieldState.clear();
+        if(animalStore != null) {
+            animalStore = newAnimalStore();
+        }
         populate();
-        view.showStatus(env.getEnvString(), field);
+        if(timeSeries != null) {
+            timeSeries.setBaseline(field);
+        }
+        if(view != null) {
+            view.showStatus(env.getEnvString(), field);
+        }
     }
-    
+
     /**
-    * Randomly populate the field with Actors.
-    */
-   private void populate() {
-        Random rand = Randomizer.getRandom();
-        field.clear();  
-
-        for (int row = 0; row < field.getDepth(); row++) {
-            for (int col = 0; col < field.getWidth(); col++) {
-                Location location = new Location(row, col);
-                Actor actor = null;
-                if (rand.nextDouble() < HYENA_CREATION_PROBABILITY) {
-                    actor = new Hyena(true, location);
-                }
-                else if (rand.nextDouble() < ZEBRA_CREATION_PROBABILITY) {
-                    actor = new Zebra(true, location);
-                }
-                else if (rand.nextDouble() < GIRAFFE_CREATION_PROBABILITY) {
-                    actor = new Giraffe(true, location);
-                }
-                else if (rand.nextDouble() < LION_CREATION_PROBABILITY) {
-                    actor = new Lion(true, location);
+     * Save the whole state of the simulation, so it can be resumed later
+     * with loadSnapshot.
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void saveSnapshot(Path file) throws IOException
+    {
+        Snapshot.write(file, field, env, seed, step, parameters);
+    }
+
+    /**
+     * Replace the state of the simulation with one saved by saveSnapshot.
+     * The simulation must have the same size as the saved one, and takes
+     * on its seed and parameters. Running on from here makes exactly the
+     * same steps as the saved simulation would have made.
+     * @param file The file to read.
+     * @throws IOException If the file cannot be read or does not match, in
+     *                     which case the simulation is unchanged.
+     */
+    public void loadSnapshot(Path file) throws IOException
+    {
+        // Everything is read before anything is changed, so a file that
+        // cannot be read leaves the simulation as it was.
+        Snapshot snapshot = Snapshot.read(file, field.getDepth(), field.getWidth());
+        AnimalStore store = animalStore != null ? newAnimalStore() : null;
+        snapshot.restore(field, store);
+        animalStore = store;
+        setParameters(snapshot.getParameters());
+        seed = snapshot.getSeed();
+        step = snapshot.getStep();
+        env = new Environment(Randomizer.deriveSeed(seed, ENVIRONMENT_STREAM),
+                              snapshot.getTime(), snapshot.getWeather());
+        nextFieldState.clear();
+        if(timeSeries != null) {
+            timeSeries.setBaseline(field);
+        }
+        if(view != null) {
+            view.showStatus(env.getEnvString(), field);
+        }
+    }
+
+    /**
+     * Write a CSV row of statistics after every step from now on: the step,
+     * time, weather, the count of each species, and the births, deaths and
+     * diseased animals of the step. The rows are written on a thread of
+     * their own, so the steps never wait for the file.
+     * @param file The file to write, replacing any earlier recording.
+     * @throws IOException If the file cannot be created, or the earlier
+     *                     recording could not be finished.
+     */
+    public void recordTimeSeries(Path file) throws IOException
+    {
+        stopTimeSeries();
+        timeSeries = new TimeSeriesWriter(file, field);
+    }
+
+    /**
+     * Stop recording statistics, waiting for every row to be written.
+     * Does nothing if nothing is being recorded.
+     * @throws IOException If any row could not be written.
+     */
+    public void stopTimeSeries() throws IOException
+    {
+        if(timeSeries != null) {
+            TimeSeriesWriter writer = timeSeries;
+            timeSeries = null;
+            writer.close();
+        }
+    }
+
+    /**
+     * Choose the engine used to run each step.
+     * @param threads 0 to run every actor in turn on the calling thread, or
+     *                the number of threads for the tiled parallel engine.
+     */
+    public void setThreads(int threads)
+    {
+        if(stepper != null) {
+            stepper.shutdown();
+        }
+        stepper = threads > 0 ? new TiledStepper(threads) : null;
+        if(stepper != null) {
+            stepper.useMetrics(metrics);
+        }
+    }
+
+    /**
+     * Choose whether each step records which cells changed, as it always
+     * does for the view, so that a FieldRenderer shown a headless
+     * simulation's field only redraws those cells.
+     * @param enabled true to record the changes; ignored with a view.
+     */
+    public void setRecordingChanges(boolean enabled)
+    {
+        recordingChanges = enabled || view != null;
+    }
+
+    /**
+     * Change the parameters of the simulation. The traits and spread
+     * chances take effect from the next step; the creation probabilities
+     * from the next reset.
+     * @param parameters The new parameters.
+     */
+    public void setParameters(Parameters parameters)
+    {
+        this.parameters = parameters;
+        field.setParameters(parameters);
+        nextFieldState.setParameters(parameters);
+        disease.setSpread(parameters.getDiseaseSpread());
+    }
+
+    /**
+     * @return The parameters of the simulation.
+     */
+    public Parameters getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * Change the seed every random choice is derived from. It takes effect
+     * from the next reset.
+     * @param seed The new seed.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * Choose where animal state is kept. With the store, every animal's age,
+     * food level, state, gender and disease flag live in primitive arrays and
+     * are aged in one bulk pass per step; the animals become views over it.
+     * Animals already in the field are moved over straight away.
+     * @param enabled true to use the data-oriented store.
+     */
+    public void useAnimalStore(boolean enabled)
+    {
+        if(enabled == (animalStore != null)) {
+            return;
+        }
+        if(enabled) {
+            animalStore = newAnimalStore();
+        }
+        for(Actor anActor : field.getActors()) {
+            if(anActor instanceof Animal animal) {
+                if(enabled) {
+                    animal.attachTo(animalStore);
                 }
-                else if (rand.nextDouble() < PLANT_CREATION_PROBABILITY) {
-                    actor = new Plant(location);
+                else {
+                    animal.detach();
                 }
-                if (actor != null) {
-                    field.placeActor(actor, location);
+            }
+        }
+        if(!enabled) {
+            animalStore = null;
+        }
+    }
+
+    /**
+     * @return An empty animal store big enough for this field. During a step
+     *         there can be at most one animal per cell in each of the two
+     *         fields, up to the most slots a store can have.
+     */
+    private AnimalStore newAnimalStore()
+    {
+        long cells = (long) field.getDepth() * field.getWidth();
+        return new AnimalStore((int) Math.min(2 * cells, Integer.MAX_VALUE));
+    }
+
+    /**
+     * @return The timings of each phase of a step, which are only taken
+     *         once switched on with setEnabled.
+     */
+    public StepMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * @return The current state of the field. Only valid until the next step.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+
+    /**
+     * @return The number of steps run since the last reset.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+    
+    /**
+     * Randomly populate the field with animals and plants. Each cell gets
+     * a hyena, zebra, giraffe or lion, or else a plant, with the creation
+     * probabilities of the parameters, tried in that order. Rather than
+     * drawing for every cell, the number of cells to skip before the next
+     * one that gets anything is drawn, as in Vegetation.growFrom, so a
+     * large field that is sparsely populated is filled in time proportional
+     * to what is placed in it.
+     */
+    private void populate() {
+        Randomizer.use(Randomizer.stream(seed, POPULATE_STREAM));
+        RandomGenerator rand = Randomizer.getRandom();
+        field.clear();
+
+        // The chance that a cell gets each species, in the order tried,
+        // and the chance it gets anything at all.
+        double[] chance = new double[POPULATE_ORDER.length];
+        double empty = 1;
+        for (int n = 0; n < POPULATE_ORDER.length; n++) {
+            double p = parameters.getCreationProbability(POPULATE_ORDER[n]);
+            chance[n] = empty * p;
+            empty *= 1 - p;
+        }
+        double filled = 1 - empty;
+        if (filled <= 0) {
+            return;
+        }
+
+        long cells = (long) field.getDepth() * field.getWidth();
+        long index = Math.min(nextSkip(filled, rand), cells);
+        while (index < cells) {
+            int row = field.getRow(index);
+            int col = field.getCol(index);
+            // Given that the cell gets something, pick what.
+            double pick = rand.nextDouble() * filled;
+            int n = 0;
+            while (n < chance.length - 1 && pick >= chance[n]) {
+                pick -= chance[n];
+                n++;
+            }
+            Location location = new Location(row, col);
+            Actor actor = switch (POPULATE_ORDER[n]) {
+                case HYENA -> new Hyena(true, location);
+                case ZEBRA -> new Zebra(true, location);
+                case GIRAFFE -> new Giraffe(true, location);
+                case LION -> new Lion(true, location);
+                default -> null;
+            };
+            if (actor == null) {
+                field.plant(row, col);
+            }
+            else {
+                if (actor instanceof Animal animal && animalStore != null) {
+                    animal.attachTo(animalStore);
                 }
+                field.placeActor(actor, location);
             }
+            index += 1 + Math.min(nextSkip(filled, rand), cells);
+        }
+    }
+
+    /**
+     * @return How many cells to pass over before the next one that gets
+     *         something, each getting something with the given chance.
+     */
+    private static long nextSkip(double chance, RandomGenerator rand)
+    {
+        if (chance >= 1) {
+            return 0;
         }
+        return (long) (Math.log(1 - rand.nextDouble()) / Math.log(1 - chance));
     }
 
     /**
@@ -1,7 +1,5 @@
 import java.awt.*;
 import javax.swing.*;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 /**
  * A graphical view of the simulation grid.
@@ -9,26 +7,36 @@ import java.util.Map;
  * representing its contents. It uses a default background color.
  * Colors for each type of species can be defined using the
  * setColor method.
+ *
+ * The grid is drawn into a FieldImage with one pixel per cell. Scaling
+ * the image up to the size of the window is left to the final drawImage.
+ *
+ * The simulation does not draw anything itself. showStatus hands the
+ * field to a FieldRenderer, which turns it into a frame and leaves it in
+ * a mailbox. A Swing timer on the event thread has the renderer draw the
+ * latest frame RENDER_FPS times a second, so a slow view never holds up
+ * the simulation and frames the view has no time for are dropped.
+ * Buttons below the grid pause, single-step and change the speed of the
+ * simulation through its StepControl.
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
  */
 public class SimulatorView extends JFrame
 {
-    // Colors used for empty locations.
-    private static final Color EMPTY_COLOR = Color.white;
+    // How many times a second the latest frame is drawn.
+    private static final int RENDER_FPS = 30;
+    // The slowest speed offered, as the pause between steps in milliseconds.
+    private static final int MAX_DELAY = 500;
 
-    // Color used for objects that have no defined color.
-    private static final Color UNKNOWN_COLOR = Color.gray;
-
-    private final String POPULATION_PREFIX = "Population: ";
     private final JLabel stepLabel;
     private final JLabel population;
     private final FieldView fieldView;
     
-    // A map for storing colors for participants in the simulation
-    private final Map<Class<?>, Color> colors;
-    // A statistics object computing and storing simulation information
+    // Turns fields into frames and draws them
+    private final FieldRenderer renderer;
+    // The pause, step and speed settings the buttons change
+    private final StepControl control = new StepControl();
     private final FieldStats stats;
 
     /**
@@ -39,85 +47,114 @@ public class SimulatorView extends JFrame
     public SimulatorView(int height, int width)
     {
         stats = new FieldStats();
-        colors = new LinkedHashMap<>();
-        setColor(Zebra.class, Color.orange);
-        setColor(Hyena.class, Color.blue);
-        setColor(Giraffe.class, Color.red);
-        setColor(Lion.class, Color.black);
-        setColor(Plant.class, Color.green);
+        renderer = new FieldRenderer(height, width);
 
         setTitle("Savannah Simulation");
         // the gui doesn't like if it there's no text by default
         stepLabel = new JLabel("[]", JLabel.CENTER);
-        population = new JLabel(POPULATION_PREFIX, JLabel.CENTER);
+        population = new JLabel("Population: ", JLabel.CENTER);
         
         setLocation(100, 50);
         
         fieldView = new FieldView(height, width);
 
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(population, BorderLayout.CENTER);
+        bottom.add(createControls(), BorderLayout.SOUTH);
+
         Container contents = getContentPane();
         contents.add(stepLabel, BorderLayout.NORTH);
         contents.add(fieldView, BorderLayout.CENTER);
-        contents.add(population, BorderLayout.SOUTH);
+        contents.add(bottom, BorderLayout.SOUTH);
         pack();
         setVisible(true);
+
+        new Timer(1000 / RENDER_FPS, (e) -> render()).start();
     }
-    
+
     /**
-     * Define a color to be used for a given class of animal.
-     * @param animalClass The animal's Class object.
-     * @param color The color to be used for the given class.
+     * Create the pause, step and speed controls. They only change the
+     * StepControl, so they never wait for the simulation.
      */
-    public void setColor(Class<?> animalClass, Color color)
+    private JPanel createControls()
     {
-        colors.put(animalClass, color);
+        JButton pauseButton = new JButton("Pause");
+        JButton stepButton = new JButton("Step");
+        stepButton.setEnabled(false);
+        pauseButton.addActionListener((e) -> {
+            if(control.isPaused()) {
+                control.resume();
+                pauseButton.setText("Pause");
+                stepButton.setEnabled(false);
+            }
+            else {
+                control.pause();
+                pauseButton.setText("Resume");
+                stepButton.setEnabled(true);
+            }
+        });
+        stepButton.addActionListener((e) -> control.requestStep());
+
+        // Faster to the right: the slider sets how much shorter than
+        // MAX_DELAY the pause between steps is.
+        JSlider speed = new JSlider(0, MAX_DELAY, MAX_DELAY - StepControl.DEFAULT_DELAY);
+        speed.addChangeListener((e) -> control.setDelay(MAX_DELAY - speed.getValue()));
+
+        JPanel controls = new JPanel();
+        controls.add(pauseButton);
+        controls.add(stepButton);
+        controls.add(new JLabel("Speed"));
+        controls.add(speed);
+        return controls;
     }
 
     /**
-     * @return The color to be used for a given class of animal.
+     * @return The pause, step and speed settings chosen in this view.
      */
-    private Color getColor(Class<?> animalClass)
+    public StepControl getStepControl()
     {
-        Color col = colors.get(animalClass);
-        if(col == null) {
-            // no color defined for this class
-            return UNKNOWN_COLOR;
-        }
-        else {
-            return col;
-        }
+        return control;
+    }
+    
+    /**
+     * Define a color to be used for a given species.
+     * @param species The species.
+     * @param color The color to be used for the given species.
+     */
+    public void setColor(Species species, Color color)
+    {
+        renderer.setColor(species, color);
     }
 
     /**
-     * Show the current status of the field.
+     * Show the current status of the field. Safe to call from the
+     * simulation thread: the field is turned into a frame for the event
+     * thread to draw, and this returns without waiting for it.
+     * The field is a buffer the simulator reuses, so everything needed
+     * for display is copied out of it before this method returns.
      * @param time Which iteration step it is.
      * @param field The field whose status is to be displayed.
      */
     public void showStatus(String time, Field field)
+    {
+        renderer.show(time, field);
+    }
+
+    /**
+     * Draw the latest frame, if there is one. Runs on the event thread.
+     */
+    private void render()
     {
         if(!isVisible()) {
             setVisible(true);
         }
-        stepLabel.setText(time);
-        stats.reset();
-        
-        fieldView.preparePaint();
-
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object actor = field.getActorAt(new Location(row, col));
-                if(actor != null) {
-                    stats.incrementCount(actor.getClass());
-                    fieldView.drawMark(col, row, getColor(actor.getClass()));
-                }
-                else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
-                }
-            }
+        if(!renderer.draw()) {
+            return;
+        }
+        if(renderer.getTime() != null) {
+            stepLabel.setText(renderer.getTime());
+            population.setText(renderer.getPopulation());
         }
-        stats.countFinished();
-
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
         fieldView.repaint();
     }
 
@@ -143,10 +180,6 @@ public class SimulatorView extends JFrame
         private final int GRID_VIEW_SCALING_FACTOR = 6;
 
         private final int gridWidth, gridHeight;
-        private int xScale, yScale;
-        Dimension size;
-        private Graphics g;
-        private Image fieldImage;
 
         /**
          * Create a new FieldView component.
@@ -155,7 +188,6 @@ public class SimulatorView extends JFrame
         {
             gridHeight = height;
             gridWidth = width;
-            size = new Dimension(0, 0);
         }
 
         /**
@@ -167,53 +199,14 @@ public class SimulatorView extends JFrame
                                  gridHeight * GRID_VIEW_SCALING_FACTOR);
         }
 
-        /**
-         * Prepare for a new round of painting. Since the component
-         * may be resized, compute the scaling factor again.
-         */
-        public void preparePaint()
-        {
-            if(! size.equals(getSize())) {  // if the size has changed...
-                size = getSize();
-                fieldImage = fieldView.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
-
-                xScale = size.width / gridWidth;
-                if(xScale < 1) {
-                    xScale = GRID_VIEW_SCALING_FACTOR;
-                }
-                yScale = size.height / gridHeight;
-                if(yScale < 1) {
-                    yScale = GRID_VIEW_SCALING_FACTOR;
-                }
-            }
-        }
-        
-        /**
-         * Paint on grid location on this field in a given color.
-         */
-        public void drawMark(int x, int y, Color color)
-        {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
-        }
-
         /**
          * The field view component needs to be redisplayed. Copy the
-         * internal image to screen.
+         * renderer's image to screen, scaled to fill the component.
          */
         public void paintComponent(Graphics g)
         {
-            if(fieldImage != null) {
-                Dimension currentSize = getSize();
-                if(size.equals(currentSize)) {
-                    g.drawImage(fieldImage, 0, 0, null);
-                }
-                else {
-                    // Rescale the previous image.
-                    g.drawImage(fieldImage, 0, 0, currentSize.width, currentSize.height, null);
-                }
-            }
+            Dimension currentSize = getSize();
+            g.drawImage(renderer.getImage(), 0, 0, currentSize.width, currentSize.height, null);
         }
     }
 }
@@ -0,0 +1,349 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Saves the whole state of a simulation to a compact binary file and reads
+ * it back, so that a long run can be stopped and resumed.
+ *
+ * Every random draw in the simulation comes from a stream derived from the
+ * seed and the step number, so the seed and step are the whole random
+ * state: a resumed run makes exactly the same draws as one that never
+ * stopped. Actors are written in the order of the field's actor list,
+ * which is the order they act in. The parameters are saved too, by name,
+ * so a run resumes with the parameters it was saved with.
+ *
+ * The file is written and read through a memory-mapped buffer, in this
+ * layout (big-endian):
+ * <pre>
+ *   int    MAGIC, int VERSION
+ *   int    depth, int width, long seed, int step
+ *   int    environment time, byte weather ordinal
+ *   byte   number of species
+ *   int    number of animals, then for each animal, in acting order:
+ *            long cell index, byte species id, int age, int food level,
+ *            byte state ordinal, byte gender ordinal, byte diseased
+ *   int    number of vegetation chunks written, then for each chunk:
+ *            int chunk number, then a long for each of its rows
+ *   int    number of parameters, then for each parameter:
+ *            short length of its name, the name in UTF-8, double value
+ * </pre>
+ * Vegetation is written by the chunks of ChunkedCells, numbered row by
+ * row, and only the chunks that have been allocated are written.
+ * Only active animals are written: inactive ones never draw random
+ * numbers and animals treat their cells as free.
+ *
+ * A snapshot is read and checked in full before anything in the
+ * simulation is changed, so a truncated or corrupt file leaves the
+ * simulation as it was.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class Snapshot
+{
+    // "SAVN", the first four bytes of every snapshot.
+    private static final int MAGIC = 0x5341564e;
+    // The version of the layout written by this class.
+    private static final int VERSION = 3;
+    // The bytes of the header before the animals, and of each animal.
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 4 + 4 + 1 + 1 + 4;
+    private static final int ANIMAL_BYTES = 8 + 1 + 4 + 4 + 1 + 1 + 1;
+    // The rows of a chunk of vegetation, each written as one long.
+    private static final int CHUNK_ROWS = ChunkedCells.CHUNK_SIZE;
+    private static final int CHUNK_BYTES = 4 + 8 * CHUNK_ROWS;
+
+    private static final AnimalState[] STATES = AnimalState.values();
+    private static final Gender[] GENDERS = Gender.values();
+    private static final Weather[] WEATHERS = Weather.values();
+
+    private final long seed;
+    private final int step;
+    private final int time;
+    private final Weather weather;
+    // The animals read, in acting order, and the cell index of each.
+    private final Animal[] animals;
+    private final long[] cells;
+    // The numbers of the vegetation chunks read, and their rows.
+    private int[] vegetationChunks;
+    private long[][] vegetation;
+    private Parameters parameters;
+
+    private Snapshot(long seed, int step, int time, Weather weather, int animalCount)
+    {
+        this.seed = seed;
+        this.step = step;
+        this.time = time;
+        this.weather = weather;
+        animals = new Animal[animalCount];
+        cells = new long[animalCount];
+    }
+
+    /**
+     * Write the state of a simulation to a file, replacing it if it exists.
+     * @param file The file to write.
+     * @param field The current state of the field.
+     * @param env The current environment.
+     * @param seed The seed of the simulation.
+     * @param step The number of steps run.
+     * @param parameters The parameters of the simulation.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path file, Field field, Environment env, long seed, int step,
+                             Parameters parameters)
+        throws IOException
+    {
+        List<Actor> actors = field.getActors();
+        int animals = 0;
+        for(Actor actor : actors) {
+            if(actor instanceof Animal && actor.isActive()) {
+                animals++;
+            }
+        }
+        Vegetation vegetation = field.getVegetation();
+        int chunks = 0;
+        for(int chunk = 0; chunk < vegetation.getChunkTotal(); chunk++) {
+            if(vegetation.isAllocated(chunk)) {
+                chunks++;
+            }
+        }
+        List<String> names = Parameters.getNames();
+        byte[][] encodedNames = new byte[names.size()][];
+        long parameterBytes = 4;
+        for(int n = 0; n < encodedNames.length; n++) {
+            encodedNames[n] = names.get(n).getBytes(StandardCharsets.UTF_8);
+            parameterBytes += 2 + encodedNames[n].length + 8;
+        }
+        long size = HEADER_BYTES + (long) animals * ANIMAL_BYTES + 4 + (long) chunks * CHUNK_BYTES
+                    + parameterBytes;
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(field.getDepth());
+            out.putInt(field.getWidth());
+            out.putLong(seed);
+            out.putInt(step);
+            out.putInt(env.getTime());
+            out.put((byte) env.getWeather().ordinal());
+            out.put((byte) Species.COUNT);
+            out.putInt(animals);
+            for(Actor actor : actors) {
+                if(actor instanceof Animal animal && animal.isActive()) {
+                    Location location = animal.getLocation();
+                    out.putLong(field.getIndex(location.row(), location.col()));
+                    out.put((byte) animal.getSpecies().getId());
+                    out.putInt(animal.getAge());
+                    out.putInt(animal.getFoodLevel());
+                    out.put((byte) animal.getState().ordinal());
+                    out.put((byte) animal.getGender().ordinal());
+                    out.put((byte) (animal.isDiseased() ? 1 : 0));
+                }
+            }
+            out.putInt(chunks);
+            for(int chunk = 0; chunk < vegetation.getChunkTotal(); chunk++) {
+                if(vegetation.isAllocated(chunk)) {
+                    out.putInt(chunk);
+                    for(int row = 0; row < CHUNK_ROWS; row++) {
+                        out.putLong(vegetation.getWord(chunk, row));
+                    }
+                }
+            }
+            out.putInt(encodedNames.length);
+            for(int n = 0; n < encodedNames.length; n++) {
+                out.putShort((short) encodedNames[n].length);
+                out.put(encodedNames[n]);
+                out.putDouble(parameters.get(names.get(n)));
+            }
+            out.force();
+        }
+    }
+
+    /**
+     * Read and check a whole snapshot. Nothing outside the snapshot is
+     * changed, so a file that cannot be read leaves the simulation as it
+     * was; restore puts the state read into a field.
+     * @param file The file to read.
+     * @param depth The depth of the field it is to be restored into.
+     * @param width The width of the field it is to be restored into.
+     * @return The state saved in the file.
+     * @throws IOException If the file cannot be read or is not a snapshot
+     *                     of a field this size.
+     */
+    public static Snapshot read(Path file, int depth, int width) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) {
+                throw new IOException(file + " is not a simulation snapshot");
+            }
+            int version = in.getInt();
+            if(version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            int savedDepth = in.getInt();
+            int savedWidth = in.getInt();
+            if(savedDepth != depth || savedWidth != width) {
+                throw new IOException("Snapshot is of a " + savedDepth + "x" + savedWidth
+                                      + " field, not " + depth + "x" + width);
+            }
+            long seed = in.getLong();
+            int step = in.getInt();
+            int time = in.getInt();
+            Weather weather = WEATHERS[in.get()];
+            if(in.get() != Species.COUNT) {
+                throw new IOException("Snapshot was written with a different set of species");
+            }
+
+            int animals = in.getInt();
+            if(animals < 0 || animals > in.remaining() / ANIMAL_BYTES) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+            Snapshot snapshot = new Snapshot(seed, step, time, weather, animals);
+            long cells = (long) depth * width;
+            for(int n = 0; n < animals; n++) {
+                long index = in.getLong();
+                if(index < 0 || index >= cells) {
+                    throw new IOException("Snapshot has an animal outside the field");
+                }
+                Species species = Species.byId(in.get());
+                Animal animal = create(species, new Location((int) (index / width),
+                                                             (int) (index % width)));
+                int age = in.getInt();
+                int foodLevel = in.getInt();
+                AnimalState state = STATES[in.get()];
+                Gender gender = GENDERS[in.get()];
+                boolean diseased = in.get() != 0;
+                animal.restore(age, foodLevel, state, gender, diseased);
+                snapshot.animals[n] = animal;
+                snapshot.cells[n] = index;
+            }
+
+            int chunks = in.getInt();
+            if(chunks < 0 || chunks > in.remaining() / CHUNK_BYTES) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+            int chunkTotal = ChunkedCells.chunksAcross(width) * ChunkedCells.chunksDown(depth);
+            snapshot.vegetationChunks = new int[chunks];
+            snapshot.vegetation = new long[chunks][CHUNK_ROWS];
+            for(int n = 0; n < chunks; n++) {
+                int chunk = in.getInt();
+                if(chunk < 0 || chunk >= chunkTotal) {
+                    throw new IOException("Snapshot has vegetation outside the field");
+                }
+                snapshot.vegetationChunks[n] = chunk;
+                for(int row = 0; row < CHUNK_ROWS; row++) {
+                    snapshot.vegetation[n][row] = in.getLong();
+                }
+            }
+
+            // Parameters missing from the file keep their default values.
+            Parameters parameters = Parameters.DEFAULTS;
+            int count = in.getInt();
+            if(count < 0 || count > in.remaining() / (2 + 8)) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+            for(int n = 0; n < count; n++) {
+                byte[] name = new byte[in.getShort() & 0xffff];
+                in.get(name);
+                double value = in.getDouble();
+                try {
+                    parameters = parameters.with(new String(name, StandardCharsets.UTF_8), value);
+                }
+                catch(IllegalArgumentException e) {
+                    throw new IOException("Snapshot has a bad parameter: " + e.getMessage(), e);
+                }
+            }
+            snapshot.parameters = parameters;
+            return snapshot;
+        }
+        catch(IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException(file + " is truncated or corrupt", e);
+        }
+    }
+
+    /**
+     * Replace everything in a field with the state read from the snapshot.
+     * The animals are placed in the field, so a snapshot can be restored
+     * only once.
+     * @param field The field to fill, which must have the snapshot's size.
+     * @param store The store to attach the animals to, or null.
+     */
+    public void restore(Field field, AnimalStore store)
+    {
+        Vegetation plants = field.getVegetation();
+        field.clear();
+        for(int n = 0; n < animals.length; n++) {
+            if(store != null) {
+                animals[n].attachTo(store);
+            }
+            field.placeActor(animals[n], cells[n]);
+        }
+        for(int n = 0; n < vegetation.length; n++) {
+            for(int row = 0; row < CHUNK_ROWS; row++) {
+                plants.setWord(vegetationChunks[n], row, vegetation[n][row]);
+            }
+        }
+    }
+
+    /**
+     * @return A new animal of the given species, to be restored.
+     */
+    private static Animal create(Species species, Location location) throws IOException
+    {
+        return switch(species) {
+            case ZEBRA -> new Zebra(false, location);
+            case HYENA -> new Hyena(false, location);
+            case GIRAFFE -> new Giraffe(false, location);
+            case LION -> new Lion(false, location);
+            default -> throw new IOException("Snapshot holds an actor of species " + species);
+        };
+    }
+
+    /**
+     * @return The seed of the saved simulation.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return The number of steps the saved simulation had run.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The parameters of the saved simulation.
+     */
+    public Parameters getParameters()
+    {
+        return parameters;
+    }
+
+    /**
+     * @return The environment time when the simulation was saved, in hours.
+     */
+    public int getTime()
+    {
+        return time;
+    }
+
+    /**
+     * @return The weather when the simulation was saved.
+     */
+    public Weather getWeather()
+    {
+        return weather;
+    }
+}
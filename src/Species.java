@@ -0,0 +1,131 @@
+/**
+ * The registry of every species in the simulation. Each species has a dense
+ * integer id (its ordinal), a row in the trait table and a diet, stored as a
+ * bitmask of the species it can eat. Hot paths compare ids and test bits
+ * instead of using instanceof checks or calling overridden methods.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public enum Species
+{
+    //       name       breeding age  max age  breeding prob  max litter  food value
+    ZEBRA("Zebra",      24*6,         24*14,   0.10,          4,          24*14),
+    HYENA("Hyena",      24,           24*30,   0.06,          2,          0),
+    GIRAFFE("Giraffe",  24*7,         24*56,   0.08,          2,          24*14),
+    LION("Lion",        24*3,         24*42,   0.08,          2,          0),
+    PLANT("Plant",      0,            0,       0.0,           0,          18);
+
+    // The number of species, and so the size of any table indexed by id.
+    public static final int COUNT = values().length;
+    // The species with each id.
+    private static final Species[] BY_ID = values();
+    // The diet of each species, as a bitmask of the ids it can eat.
+    private static final int[] PREY = new int[COUNT];
+
+    static {
+        PREY[ZEBRA.ordinal()] = maskOf(PLANT);
+        PREY[GIRAFFE.ordinal()] = maskOf(PLANT);
+        PREY[HYENA.ordinal()] = maskOf(ZEBRA);
+        PREY[LION.ordinal()] = maskOf(GIRAFFE, ZEBRA);
+    }
+
+    private final String name;
+    // The age at which it can start to breed.
+    private final int breedingAge;
+    // The age to which it can live.
+    private final int maxAge;
+    // The likelihood of it breeding.
+    private final double breedingProbability;
+    // The maximum number of births.
+    private final int maxLitterSize;
+    // The amount of "food" it gives when eaten.
+    private final int foodValue;
+
+    Species(String name, int breedingAge, int maxAge, double breedingProbability,
+            int maxLitterSize, int foodValue)
+    {
+        this.name = name;
+        this.breedingAge = breedingAge;
+        this.maxAge = maxAge;
+        this.breedingProbability = breedingProbability;
+        this.maxLitterSize = maxLitterSize;
+        this.foodValue = foodValue;
+    }
+
+    /**
+     * @param id A species id.
+     * @return The species with that id.
+     */
+    public static Species byId(int id)
+    {
+        return BY_ID[id];
+    }
+
+    /**
+     * @return The dense id of this species, from 0 to COUNT - 1.
+     */
+    public int getId()
+    {
+        return ordinal();
+    }
+
+    /**
+     * @param prey Another species.
+     * @return true if this species can eat that one.
+     */
+    public boolean canEat(Species prey)
+    {
+        return (PREY[ordinal()] & (1 << prey.ordinal())) != 0;
+    }
+
+    /**
+     * @return The ids this species can eat, as a bitmask.
+     */
+    public int getPreyMask()
+    {
+        return PREY[ordinal()];
+    }
+
+    public int getBreedingAge()
+    {
+        return breedingAge;
+    }
+
+    public int getMaxAge()
+    {
+        return maxAge;
+    }
+
+    public double getBreedingProbability()
+    {
+        return breedingProbability;
+    }
+
+    public int getMaxLitterSize()
+    {
+        return maxLitterSize;
+    }
+
+    public int getFoodValue()
+    {
+        return foodValue;
+    }
+
+    public String toString()
+    {
+        return name;
+    }
+
+    /**
+     * @return A bitmask with the bit of each given species set.
+     */
+    private static int maskOf(Species... species)
+    {
+        int mask = 0;
+        for(Species s : species) {
+            mask |= 1 << s.ordinal();
+        }
+        return mask;
+    }
+}
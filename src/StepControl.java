@@ -0,0 +1,96 @@
+/**
+ * The pause, single-step and speed settings of a running simulation.
+ * The buttons of the view change the settings on the Swing thread, and the
+ * simulation reads them on its own thread before each step. Changing a
+ * setting never waits for the simulation, so the interface stays
+ * responsive however slow a step is.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class StepControl
+{
+    // The pause between steps unless it is changed, in milliseconds.
+    public static final int DEFAULT_DELAY = 50;
+
+    private boolean paused;
+    // Steps asked for while paused that have not been run yet.
+    private int stepsRequested;
+    private volatile int delay = DEFAULT_DELAY;
+
+    /**
+     * Stop the simulation after the step it is running.
+     */
+    public synchronized void pause()
+    {
+        paused = true;
+    }
+
+    /**
+     * Let the simulation run freely again.
+     */
+    public synchronized void resume()
+    {
+        paused = false;
+        stepsRequested = 0;
+        notifyAll();
+    }
+
+    /**
+     * @return true if the simulation is paused.
+     */
+    public synchronized boolean isPaused()
+    {
+        return paused;
+    }
+
+    /**
+     * Run one more step while paused. Does nothing if not paused.
+     */
+    public synchronized void requestStep()
+    {
+        if(paused) {
+            stepsRequested++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @param milliseconds The pause between steps while running freely.
+     */
+    public void setDelay(int milliseconds)
+    {
+        delay = Math.max(milliseconds, 0);
+    }
+
+    /**
+     * @return The pause between steps while running freely, in milliseconds.
+     */
+    public int getDelay()
+    {
+        return delay;
+    }
+
+    /**
+     * Called by the simulation before each step. Returns straight away when
+     * running, and when paused waits until a step is asked for or the
+     * simulation is resumed.
+     * @return false if the waiting thread was interrupted.
+     */
+    public synchronized boolean awaitStep()
+    {
+        while(paused && stepsRequested == 0) {
+            try {
+                wait();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        if(paused) {
+            stepsRequested--;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event spanning one step of a simulation, so that
+ * a recording can be lined up with the steps that were being run.
+ *
+ * Like every JFR event it costs next to nothing unless a recording with
+ * the event switched on is running, as its fields are only filled in once
+ * shouldCommit says it will be kept.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+@Name("savannah.Step")
+@Label("Simulation Step")
+@Category("Savannah")
+@Description("One step of the simulation")
+@StackTrace(false)
+public class StepEvent extends jdk.jfr.Event
+{
+    @Label("Step")
+    int step;
+
+    @Label("Animals Before")
+    @Description("The number of live animals as the step began")
+    int animalsBefore;
+
+    @Label("Animals After")
+    @Description("The number of live animals once the step was over")
+    int animalsAfter;
+
+    @Label("Plants")
+    int plants;
+
+    @Label("Time")
+    @Description("The environment time after the step, in hours")
+    int time;
+
+    @Label("Weather")
+    String weather;
+}
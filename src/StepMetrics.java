@@ -0,0 +1,348 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Measures where the time of each step goes: how long each phase of
+ * Simulator.simulateOneStep takes and how much it allocates, and how many
+ * animals take each AnimalState branch of Animal.act and how long those
+ * branches take in total.
+ *
+ * The measurements are off until setEnabled is called, and cost only a
+ * check of a flag per phase and per animal while they are off. Once on,
+ * each phase reads the clock and the step thread's count of allocated
+ * bytes as it begins and ends, and each animal reads the clock around its
+ * action. The tiled engine's workers count what they allocate for each
+ * task themselves and add it to the phase through workerAllocated, so a
+ * phase's allocation is that of the threads running it and nothing else.
+ *
+ * The time of every phase and action is kept per step for the last WINDOW
+ * steps, from which percentiles are worked out when they are asked for.
+ * The measurements can be read through JMX once register has been
+ * called, and a summary can be printed every few steps.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class StepMetrics implements StepMetricsMBean
+{
+    /**
+     * The phases of a step, in the order they run.
+     */
+    public enum Phase
+    {
+        // Moving the clock on and clearing the spare field.
+        PREPARE,
+        // Ageing every animal in the animal store.
+        AGE,
+        DISEASE,
+        DENSITY_MAP,
+        SCENT_MAP,
+        // Every actor acting.
+        ACT,
+        PLANTS,
+        // Finding the cells the view must redraw.
+        CHANGES,
+        // Recording the time series.
+        STATISTICS,
+        // Handing the field to the view.
+        VIEW
+    }
+
+    // The number of recent steps percentiles are taken over.
+    public static final int WINDOW = 1024;
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final AnimalState[] STATES = AnimalState.values();
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private volatile boolean enabled;
+    private volatile int logEvery;
+    // Whether the step being run is measured, fixed when it begins.
+    private boolean recording;
+
+    // The phase running, its start time and the bytes allocated before it.
+    private Phase current;
+    private long phaseStart, allocStart;
+    // The time and allocation of each phase so far in the step being run,
+    // and whether it has run.
+    private final long[] stepNanos = new long[PHASES.length];
+    private final long[] stepBytes = new long[PHASES.length];
+    private final boolean[] stepRan = new boolean[PHASES.length];
+    // The bytes the tiled engine's workers allocated in the phase running.
+    private final LongAdder workerBytes = new LongAdder();
+
+    // The actions of the step being run, added to from every thread.
+    private final LongAdder[] actionCalls = new LongAdder[STATES.length];
+    private final LongAdder[] actionNanos = new LongAdder[STATES.length];
+
+    // Guarded by this: the totals and the time of each recent step.
+    private long steps;
+    private final long[] phaseCalls = new long[PHASES.length];
+    private final long[] phaseBytes = new long[PHASES.length];
+    private final long[][] phaseHistory = new long[PHASES.length][WINDOW];
+    private final long[] actionTotals = new long[STATES.length];
+    private final long[][] actionHistory = new long[STATES.length][WINDOW];
+
+    /**
+     * Create the metrics, switched off.
+     */
+    public StepMetrics()
+    {
+        for(int n = 0; n < STATES.length; n++) {
+            actionCalls[n] = new LongAdder();
+            actionNanos[n] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return The JVM's counter of allocated bytes, or null if it has none.
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter()
+    {
+        if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            return threads;
+        }
+        return null;
+    }
+
+    /**
+     * Make the metrics readable through the platform MBean server, as
+     * savannah:type=StepMetrics,name=(the given name). Metrics registered
+     * earlier under the same name are replaced.
+     * @param name The name to register under.
+     */
+    public void register(String name)
+    {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("savannah:type=StepMetrics,name=" + ObjectName.quote(name));
+            if(server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        }
+        catch(JMException e) {
+            System.err.println("Could not register step metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called by the simulation as a step begins.
+     */
+    public void beginStep()
+    {
+        recording = enabled;
+        current = null;
+    }
+
+    /**
+     * @return true if the step being run is measured.
+     */
+    public boolean isRecording()
+    {
+        return recording;
+    }
+
+    /**
+     * Called by the simulation as each phase begins. The phase before it
+     * ends at the same moment.
+     * @param phase The phase beginning.
+     */
+    public void begin(Phase phase)
+    {
+        if(!recording) {
+            return;
+        }
+        long now = System.nanoTime();
+        long allocated = allocatedBytes();
+        if(current != null) {
+            stepNanos[current.ordinal()] += now - phaseStart;
+            stepBytes[current.ordinal()] += allocated - allocStart + workerBytes.sumThenReset();
+            stepRan[current.ordinal()] = true;
+        }
+        current = phase;
+        phaseStart = now;
+        allocStart = allocated;
+    }
+
+    /**
+     * Called by a worker thread of the tiled engine once it has run a task
+     * of the phase running. Safe to call from several threads at once.
+     * @param bytes The bytes the worker allocated while running the task.
+     */
+    public void workerAllocated(long bytes)
+    {
+        workerBytes.add(bytes);
+    }
+
+    /**
+     * Called by an animal once it has taken the action of its state.
+     * Safe to call from several threads at once.
+     * @param state The state the animal acted in.
+     * @param nanos How long the action took.
+     */
+    public void actionTaken(AnimalState state, long nanos)
+    {
+        actionCalls[state.ordinal()].increment();
+        actionNanos[state.ordinal()].add(nanos);
+    }
+
+    /**
+     * Called by the simulation as a step ends.
+     * @param step The number of the step.
+     */
+    public void endStep(int step)
+    {
+        if(!recording) {
+            return;
+        }
+        begin(null);
+        synchronized(this) {
+            int slot = (int) (steps % WINDOW);
+            for(int n = 0; n < PHASES.length; n++) {
+                phaseHistory[n][slot] = stepNanos[n];
+                phaseBytes[n] += stepBytes[n];
+                if(stepRan[n]) {
+                    phaseCalls[n]++;
+                }
+                stepNanos[n] = 0;
+                stepBytes[n] = 0;
+                stepRan[n] = false;
+            }
+            for(int n = 0; n < STATES.length; n++) {
+                actionTotals[n] += actionCalls[n].sumThenReset();
+                actionHistory[n][slot] = actionNanos[n].sumThenReset();
+            }
+            steps++;
+        }
+        int every = logEvery;
+        if(every > 0 && step % every == 0) {
+            System.out.println("Step " + step + ":");
+            for(String line : getSummary()) {
+                System.out.println("  " + line);
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public int getLogEvery()
+    {
+        return logEvery;
+    }
+
+    @Override
+    public void setLogEvery(int steps)
+    {
+        logEvery = Math.max(steps, 0);
+    }
+
+    @Override
+    public synchronized long getStepsRecorded()
+    {
+        return steps;
+    }
+
+    @Override
+    public synchronized String[] getSummary()
+    {
+        String[] lines = new String[PHASES.length + STATES.length];
+        double perStep = Math.max(steps, 1);
+        for(int n = 0; n < PHASES.length; n++) {
+            lines[n] = String.format("%-13s calls %9d %s  alloc %10.1f KB/step",
+                                     PHASES[n], phaseCalls[n], timings(phaseHistory[n]),
+                                     phaseBytes[n] / perStep / 1024);
+        }
+        for(int n = 0; n < STATES.length; n++) {
+            lines[PHASES.length + n] = String.format("%-13s calls %9d %s",
+                                                     STATES[n], actionTotals[n], timings(actionHistory[n]));
+        }
+        return lines;
+    }
+
+    /**
+     * @return The mean and percentiles of the recent steps in a history, in milliseconds.
+     */
+    private String timings(long[] history)
+    {
+        long[] recent = recent(history);
+        double mean = 0;
+        for(long nanos : recent) {
+            mean += nanos;
+        }
+        mean = recent.length == 0 ? Double.NaN : mean / recent.length;
+        return String.format("mean %8.3f  p50 %8.3f  p90 %8.3f  p99 %8.3f ms", mean / 1e6,
+                             percentile(recent, 50), percentile(recent, 90), percentile(recent, 99));
+    }
+
+    @Override
+    public synchronized double getPercentileMillis(String name, double percentile)
+    {
+        for(int n = 0; n < PHASES.length; n++) {
+            if(PHASES[n].name().equalsIgnoreCase(name)) {
+                return percentile(recent(phaseHistory[n]), percentile);
+            }
+        }
+        for(int n = 0; n < STATES.length; n++) {
+            if(STATES[n].name().equalsIgnoreCase(name)) {
+                return percentile(recent(actionHistory[n]), percentile);
+            }
+        }
+        throw new IllegalArgumentException("No phase or action called " + name);
+    }
+
+    @Override
+    public synchronized void reset()
+    {
+        steps = 0;
+        Arrays.fill(phaseCalls, 0);
+        Arrays.fill(phaseBytes, 0);
+        Arrays.fill(actionTotals, 0);
+    }
+
+    /**
+     * @return The part of a history holding the recent steps, sorted.
+     */
+    private long[] recent(long[] history)
+    {
+        long[] recent = Arrays.copyOf(history, (int) Math.min(steps, WINDOW));
+        Arrays.sort(recent);
+        return recent;
+    }
+
+    /**
+     * @return A percentile of some sorted times by the nearest rank, in milliseconds.
+     */
+    private static double percentile(long[] sorted, double percentile)
+    {
+        if(sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1] / 1e6;
+    }
+
+    /**
+     * @return The bytes allocated so far by the calling thread, or 0 if unknown.
+     */
+    public static long allocatedBytes()
+    {
+        return THREADS == null ? 0 : Math.max(THREADS.getCurrentThreadAllocatedBytes(), 0);
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * The management interface of StepMetrics, through which a tool such as
+ * JConsole can switch the measurements on and off and read them while a
+ * simulation runs.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public interface StepMetricsMBean
+{
+    /**
+     * @return true if steps are being measured.
+     */
+    boolean isEnabled();
+
+    /**
+     * @param enabled true to measure steps from the next step on.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return How often a summary is printed, in steps, or 0 for never.
+     */
+    int getLogEvery();
+
+    /**
+     * @param steps How often to print a summary, in steps, or 0 for never.
+     */
+    void setLogEvery(int steps);
+
+    /**
+     * @return The number of steps measured since the last reset.
+     */
+    long getStepsRecorded();
+
+    /**
+     * @return One line for each phase of a step and each animal action,
+     *         giving its calls, mean time, percentiles and allocation.
+     */
+    String[] getSummary();
+
+    /**
+     * Look up a percentile of the time a phase or an action took per step,
+     * over the most recent steps.
+     * @param name The name of a phase or of an AnimalState.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The time in milliseconds, or NaN if nothing has been measured.
+     */
+    double getPercentileMillis(String name, double percentile);
+
+    /**
+     * Forget everything measured so far.
+     */
+    void reset();
+}
@@ -0,0 +1,213 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs one simulation step on several threads by splitting the field into
+ * square tiles and colouring them like a checkerboard with four colours.
+ * The step runs in four phases, one per colour, and the tiles of a colour
+ * run at the same time. Two tiles of the same colour always have a whole
+ * tile between them, so actors running concurrently never touch the same
+ * cells.
+ *
+ * An actor reads the current field up to 4 cells away (when looking for a
+ * partner) and writes up to 1 cell away in either field (moving, giving
+ * birth or eating). A tile must therefore be at
+ * least 6 cells wide; MIN_TILE_SIZE leaves some margin.
+ *
+ * Each tile draws its random numbers from its own stream, keyed by the
+ * tile's position under the step's seed. As tiles of one colour cannot
+ * affect each other, a step gives the same result for any thread count.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class TiledStepper
+{
+    // The smallest tile size that keeps concurrent tiles apart.
+    public static final int MIN_TILE_SIZE = 8;
+    // The tile size used unless another is given.
+    private static final int DEFAULT_TILE_SIZE = 32;
+
+    private final int threads;
+    private final int tileSize;
+    private final ExecutorService pool;
+    // The metrics the workers report their allocation to, or null.
+    private StepMetrics metrics;
+
+    /**
+     * Create a stepper with the default tile size.
+     * @param threads The number of threads to run tiles on.
+     */
+    public TiledStepper(int threads)
+    {
+        this(threads, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Create a stepper.
+     * @param threads The number of threads to run tiles on.
+     * @param tileSize The width and height of each tile, at least MIN_TILE_SIZE.
+     */
+    public TiledStepper(int threads, int tileSize)
+    {
+        if(threads < 1 || tileSize < MIN_TILE_SIZE) {
+            throw new IllegalArgumentException("Need at least one thread and a tile size of at least "
+                                               + MIN_TILE_SIZE);
+        }
+        this.threads = threads;
+        this.tileSize = tileSize;
+        pool = Executors.newFixedThreadPool(threads, (task) -> {
+            Thread thread = new Thread(task, "step-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Let every actor in the current field act once, building the next field.
+     * @param currentField The current state of the field.
+     * @param nextFieldState The empty field the next state is built in.
+     * @param env The environment of the simulation.
+     * @param stepSeed The seed the tiles' random streams are derived from.
+     */
+    public void step(Field currentField, Field nextFieldState, Environment env, long stepSeed)
+    {
+        int tilesDown = (currentField.getDepth() + tileSize - 1) / tileSize;
+        int tilesAcross = (currentField.getWidth() + tileSize - 1) / tileSize;
+
+        currentField.beginConcurrentUpdates();
+        nextFieldState.beginConcurrentUpdates();
+        try {
+            for(int phase = 0; phase < 4; phase++) {
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for(int tileRow = phase / 2; tileRow < tilesDown; tileRow += 2) {
+                    for(int tileCol = phase % 2; tileCol < tilesAcross; tileCol += 2) {
+                        int firstRow = tileRow * tileSize;
+                        int firstCol = tileCol * tileSize;
+                        if(!currentField.mayHaveActors(firstRow, firstCol,
+                                Math.min(firstRow + tileSize, currentField.getDepth()) - 1,
+                                Math.min(firstCol + tileSize, currentField.getWidth()) - 1)) {
+                            // Nothing lives here, so there is nothing to run.
+                            continue;
+                        }
+                        long tile = (long) tileRow * tilesAcross + tileCol;
+                        tasks.add(() -> {
+                            Randomizer.use(Randomizer.stream(stepSeed, tile));
+                            actInTile(currentField, nextFieldState, env, firstRow, firstCol);
+                            return null;
+                        });
+                    }
+                }
+                runAll(tasks);
+            }
+        }
+        finally {
+            currentField.endConcurrentUpdates();
+            nextFieldState.endConcurrentUpdates();
+        }
+    }
+
+    /**
+     * Let every actor whose cell lies in one tile act, in row-major order.
+     */
+    private void actInTile(Field currentField, Field nextFieldState, Environment env,
+                           int firstRow, int firstCol)
+    {
+        int lastRow = Math.min(firstRow + tileSize, currentField.getDepth());
+        int lastCol = Math.min(firstCol + tileSize, currentField.getWidth());
+        for(int row = firstRow; row < lastRow; row++) {
+            for(int col = firstCol; col < lastCol; col++) {
+                Actor anActor = currentField.getActorAt(row, col);
+                if(anActor != null) {
+                    anActor.act(currentField, nextFieldState, env);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a number of independent tasks, such as one per band of rows of a
+     * phase that only writes to its own band, on the stepper's threads.
+     * @param count The number of tasks.
+     * @param task Called once with each task number from 0 to count - 1.
+     */
+    public void runBands(int count, IntConsumer task)
+    {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(int band = 0; band < count; band++) {
+            int number = band;
+            tasks.add(() -> {
+                task.accept(number);
+                return null;
+            });
+        }
+        runAll(tasks);
+    }
+
+    /**
+     * Have the workers report what they allocate to some metrics whenever
+     * the step they run is measured.
+     * @param metrics The metrics of the simulation, or null.
+     */
+    public void useMetrics(StepMetrics metrics)
+    {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Run the tasks of one phase on the pool and wait for all of them.
+     * In a measured step each task counts the bytes its worker allocates.
+     */
+    private void runAll(List<Callable<Void>> tasks)
+    {
+        if(metrics != null && metrics.isRecording()) {
+            StepMetrics measured = metrics;
+            for(int n = 0; n < tasks.size(); n++) {
+                Callable<Void> task = tasks.get(n);
+                tasks.set(n, () -> {
+                    long before = StepMetrics.allocatedBytes();
+                    try {
+                        return task.call();
+                    }
+                    finally {
+                        measured.workerAllocated(StepMetrics.allocatedBytes() - before);
+                    }
+                });
+            }
+        }
+        try {
+            for(Future<Void> result : pool.invokeAll(tasks)) {
+                result.get();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while stepping", e);
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException("An actor failed while stepping", e.getCause());
+        }
+    }
+
+    /**
+     * @return The number of threads tiles are run on.
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Stop the worker threads. The stepper cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,199 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Writes one CSV row per step of a simulation: the step, the environment
+ * time and weather, the count of every species, and the births, deaths and
+ * diseased animals of the step.
+ *
+ * The counts are taken from the field on the simulation thread, which only
+ * costs a pass over the actors. The rows are then handed to a background
+ * thread that formats and writes them, so the simulation never waits for
+ * the disk. The queue between them holds at most QUEUE_CAPACITY rows; if
+ * the disk falls that far behind, further rows are dropped rather than
+ * holding up the simulation, and the number dropped is reported when the
+ * writer is closed. The step column shows which rows are missing.
+ *
+ * Births are the animals of age 0 at the end of a step, as every other
+ * animal has aged by then. Deaths are worked out from the change in the
+ * number of animals: deaths = animals before + births - animals after.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class TimeSeriesWriter implements AutoCloseable
+{
+    // The row that tells the writing thread to finish.
+    private static final int[] END = new int[0];
+    private static final Weather[] WEATHERS = Weather.values();
+    // The most rows waiting to be written before rows are dropped.
+    private static final int QUEUE_CAPACITY = 1 << 16;
+
+    private final BufferedWriter out;
+    private final BlockingQueue<int[]> rows = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    // The first failure of the writing thread, reported by close.
+    private volatile IOException failure;
+    // The number of animals at the end of the last step recorded.
+    private int animalsBefore;
+    // The rows dropped because the queue was full.
+    private int droppedRows;
+
+    /**
+     * Create a writer, replacing the file if it exists, and write the header.
+     * @param file The CSV file to write.
+     * @param field The field as it is before the first step to be recorded.
+     * @throws IOException If the file cannot be created.
+     */
+    public TimeSeriesWriter(Path file, Field field) throws IOException
+    {
+        out = Files.newBufferedWriter(file);
+        StringBuilder header = new StringBuilder("step,time,weather");
+        for(int id = 0; id < Species.COUNT; id++) {
+            header.append(',').append(Species.byId(id));
+        }
+        header.append(",births,deaths,diseased");
+        out.write(header.toString());
+        out.newLine();
+        countAnimals(field);
+
+        writer = new Thread(this::writeRows, "time-series-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Count the animals of a field as the starting point for the deaths
+     * of the next step, after the simulation is reset or loaded.
+     * @param field The field as it is before the next step.
+     */
+    public void setBaseline(Field field)
+    {
+        countAnimals(field);
+    }
+
+    /**
+     * @return The number of rows dropped so far because the writing thread
+     *         had fallen too far behind.
+     */
+    public int getDroppedRows()
+    {
+        return droppedRows;
+    }
+
+    /**
+     * Take the animals of a field as the count before the next step.
+     */
+    private void countAnimals(Field field)
+    {
+        animalsBefore = field.getAnimalCount();
+    }
+
+    /**
+     * Record the step just completed. Returns without waiting for the row
+     * to be written; if QUEUE_CAPACITY rows are already waiting, the row is
+     * dropped and counted instead.
+     * @param step The number of the step.
+     * @param env The environment after the step.
+     * @param field The field after the step.
+     */
+    public void record(int step, Environment env, Field field)
+    {
+        int births = 0;
+        int diseased = 0;
+        for(Actor actor : field.getActors()) {
+            if(actor instanceof Animal animal && animal.isActive()) {
+                if(animal.getAge() == 0) {
+                    births++;
+                }
+                if(animal.isDiseased()) {
+                    diseased++;
+                }
+            }
+        }
+        int animals = field.getAnimalCount();
+
+        int[] row = new int[3 + Species.COUNT + 3];
+        row[0] = step;
+        row[1] = env.getTime();
+        row[2] = env.getWeather().ordinal();
+        for(int id = 0; id < Species.COUNT; id++) {
+            row[3 + id] = field.getCount(Species.byId(id));
+        }
+        row[3 + Species.COUNT] = births;
+        row[4 + Species.COUNT] = animalsBefore + births - animals;
+        row[5 + Species.COUNT] = diseased;
+        animalsBefore = animals;
+        if(!rows.offer(row)) {
+            droppedRows++;
+        }
+    }
+
+    /**
+     * Write every row recorded so far, then close the file. Warns on the
+     * error stream if any rows were dropped.
+     * @throws IOException If any row could not be written.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            rows.put(END);
+            writer.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+        if(droppedRows > 0) {
+            System.err.println("Dropped " + droppedRows
+                               + " rows of statistics because the file could not keep up");
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Take rows off the queue and write them until the end row arrives.
+     * Runs on the writing thread.
+     */
+    private void writeRows()
+    {
+        StringBuilder line = new StringBuilder();
+        while(true) {
+            int[] row;
+            try {
+                row = rows.take();
+            }
+            catch(InterruptedException e) {
+                return;
+            }
+            if(row == END) {
+                break;
+            }
+            if(failure != null) {
+                continue;
+            }
+            line.setLength(0);
+            line.append(row[0]).append(',').append(row[1]).append(',').append(WEATHERS[row[2]]);
+            for(int n = 3; n < row.length; n++) {
+                line.append(',').append(row[n]);
+            }
+            try {
+                out.write(line.toString());
+                out.newLine();
+                if(rows.isEmpty()) {
+                    out.flush();
+                }
+            }
+            catch(IOException e) {
+                failure = e;
+            }
+        }
+    }
+}
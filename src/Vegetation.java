@@ -0,0 +1,420 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * The plants of a field, stored as one bit per cell. Every plant is the same
+ * (it is either there or not, and always gives the same food), so there is
+ * no need for an object per plant.
+ *
+ * The bits are kept in the same square chunks as the field's actors (see
+ * ChunkedCells). A chunk is 64 cells wide, so each row of a chunk is one
+ * 64-bit word, which lets spreading shift whole words sideways and OR whole
+ * rows together: seeds spread to their eight neighbours 64 cells at a time.
+ * A chunk is only allocated once a plant grows in it, and one that is still
+ * empty when the layer is next cleared is freed, so a large field pays for
+ * the area its plants cover rather than for its size.
+ *
+ * @author Tanjim Islam and Keiran Matthews
+ * @version 1.0.0
+ */
+public class Vegetation
+{
+    // The chance a plant spreads to its neighbours in one step, in dry weather.
+    public static final double SPREAD_CHANCE = 0.01;
+
+    // Lets eat() clear a bit atomically, as tiles on other threads may be
+    // eating from the same word.
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    // The rows of a chunk, each held in one word.
+    private static final int ROWS = ChunkedCells.CHUNK_SIZE;
+    private static final int ROW_MASK = ROWS - 1;
+
+    private final int depth, width;
+    // The number of chunks across and down the field.
+    private final int chunksAcross, chunksDown;
+    // The bits of the words in the last column of chunks that are inside the field.
+    private final long lastWordMask;
+    // The plants of each chunk, one word per row, followed by the plants
+    // eaten from each row since the layer was last cleared. null where no
+    // chunk has been allocated.
+    private final long[][] chunks;
+    // Working space for growFrom, reused between steps: the seeds picked
+    // in each chunk, and whether any were picked there this step.
+    private final long[][] seeds;
+    private final boolean[] seeded;
+    // The rows of one chunk as grown, and its seeds spread sideways, with
+    // the last row of the chunk above first and the first row of the chunk
+    // below last.
+    private final long[] grown = new long[ROWS];
+    private final long[] across = new long[ROWS + 2];
+
+    /**
+     * Create an empty layer for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public Vegetation(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        chunksAcross = ChunkedCells.chunksAcross(width);
+        chunksDown = ChunkedCells.chunksDown(depth);
+        lastWordMask = -1L >>> (chunksAcross * 64 - width);
+        chunks = new long[chunksAcross * chunksDown][];
+        seeds = new long[chunks.length][];
+        seeded = new boolean[chunks.length];
+    }
+
+    /**
+     * @return true if there is a plant at the given position.
+     */
+    public boolean has(int row, int col)
+    {
+        long[] chunk = chunks[chunkOf(row, col)];
+        return chunk != null && (chunk[row & ROW_MASK] & (1L << col)) != 0;
+    }
+
+    /**
+     * @return true if there was a plant at the given position before
+     *         anything was eaten from this layer.
+     */
+    boolean hadPlant(int row, int col)
+    {
+        long[] chunk = chunks[chunkOf(row, col)];
+        int word = row & ROW_MASK;
+        return chunk != null && ((chunk[word] | chunk[ROWS + word]) & (1L << col)) != 0;
+    }
+
+    /**
+     * Put a plant at the given position.
+     */
+    public void plant(int row, int col)
+    {
+        allocate(chunkOf(row, col))[row & ROW_MASK] |= 1L << col;
+    }
+
+    /**
+     * Remove a plant without eating it, for example because an animal is standing on it.
+     */
+    public void remove(int row, int col)
+    {
+        long[] chunk = chunks[chunkOf(row, col)];
+        if(chunk != null) {
+            chunk[row & ROW_MASK] &= ~(1L << col);
+        }
+    }
+
+    /**
+     * Eat the plant at the given position, if there is one. Safe to call from
+     * several threads at once.
+     * @return true if there was a plant to eat.
+     */
+    public boolean eat(int row, int col)
+    {
+        long[] chunk = chunks[chunkOf(row, col)];
+        if(chunk == null) {
+            return false;
+        }
+        long bit = 1L << col;
+        int word = row & ROW_MASK;
+        long old = (long) WORDS.getAndBitwiseAnd(chunk, word, ~bit);
+        if((old & bit) == 0) {
+            return false;
+        }
+        WORDS.getAndBitwiseOr(chunk, ROWS + word, bit);
+        return true;
+    }
+
+    /**
+     * @return The number of plants.
+     */
+    public int count()
+    {
+        int count = 0;
+        for(long[] chunk : chunks) {
+            if(chunk != null) {
+                for(int word = 0; word < ROWS; word++) {
+                    count += Long.bitCount(chunk[word]);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Remove every plant. Chunks that had no plants since the last clear
+     * are freed; the rest are kept for reuse.
+     */
+    public void clear()
+    {
+        for(int n = 0; n < chunks.length; n++) {
+            long[] chunk = chunks[n];
+            if(chunk == null) {
+                continue;
+            }
+            if(isEmpty(chunk, chunk.length)) {
+                chunks[n] = null;
+            }
+            else {
+                Arrays.fill(chunk, 0);
+            }
+        }
+    }
+
+    /**
+     * @return The number of chunks in the layer, allocated or not.
+     */
+    int getChunkTotal()
+    {
+        return chunks.length;
+    }
+
+    /**
+     * @return true if the chunk with the given number may hold plants.
+     */
+    boolean isAllocated(int chunk)
+    {
+        return chunks[chunk] != null;
+    }
+
+    /**
+     * @return One row of a chunk, with a bit for each of its 64 cells.
+     */
+    long getWord(int chunk, int row)
+    {
+        return chunks[chunk] == null ? 0 : chunks[chunk][row];
+    }
+
+    /**
+     * Replace one row of a chunk, for example from a saved snapshot. Bits
+     * for cells outside the field are dropped.
+     */
+    void setWord(int chunk, int row, long bits)
+    {
+        if(chunk % chunksAcross == chunksAcross - 1) {
+            bits &= lastWordMask;
+        }
+        if((chunk / chunksAcross << ChunkedCells.CHUNK_BITS) + row >= depth) {
+            bits = 0;
+        }
+        if(bits != 0 || chunks[chunk] != null) {
+            allocate(chunk)[row] = bits;
+        }
+    }
+
+    /**
+     * Compare one row of a chunk of this layer, as it was before anything
+     * was eaten from it, with the same row of another layer.
+     * @param other A layer of the same size.
+     * @param chunk The number of the chunk.
+     * @param row The row within the chunk.
+     * @return A bit set for each cell whose plant may differ between the two.
+     */
+    long changedBits(Vegetation other, int chunk, int row)
+    {
+        long[] mine = chunks[chunk];
+        if(mine == null) {
+            return other.getWord(chunk, row);
+        }
+        return (mine[row] ^ other.getWord(chunk, row)) | mine[ROWS + row];
+    }
+
+    /**
+     * Replace this layer with the plants of another layer after one step of
+     * growth: every plant survives, and each one spreads to all eight
+     * neighbouring cells with the given chance. Only chunks that had plants
+     * or are next to a chunk with seeds are worked on.
+     * @param from The layer to grow from, of the same size.
+     * @param chance The chance of each plant spreading.
+     * @param rand The random stream to draw from.
+     */
+    public void growFrom(Vegetation from, double chance, RandomGenerator rand)
+    {
+        pickSeeds(from, chance, rand);
+        for(int n = 0; n < chunks.length; n++) {
+            int chunkRow = n / chunksAcross;
+            int chunkCol = n % chunksAcross;
+            long[] plants = from.chunks[n];
+            boolean spreading = seedsAround(chunkRow, chunkCol);
+            if(plants == null && !spreading) {
+                if(chunks[n] != null) {
+                    Arrays.fill(chunks[n], 0, ROWS, 0);
+                }
+                continue;
+            }
+
+            if(spreading) {
+                // Spread each seed to its left and right neighbours, carrying
+                // bits between chunks, for this chunk's rows and the rows
+                // either side of it...
+                across[0] = spreadAcross(chunkRow - 1, chunkCol, ROWS - 1);
+                for(int row = 0; row < ROWS; row++) {
+                    across[row + 1] = spreadAcross(chunkRow, chunkCol, row);
+                }
+                across[ROWS + 1] = spreadAcross(chunkRow + 1, chunkCol, 0);
+            }
+            // ...then spread up and down a row, and add the plants already there.
+            long mask = chunkCol == chunksAcross - 1 ? lastWordMask : -1L;
+            int rows = Math.min(ROWS, depth - (chunkRow << ChunkedCells.CHUNK_BITS));
+            for(int row = 0; row < ROWS; row++) {
+                long word = plants == null ? 0 : plants[row];
+                if(spreading) {
+                    word |= across[row] | across[row + 1] | across[row + 2];
+                }
+                grown[row] = row < rows ? word & mask : 0;
+            }
+
+            if(chunks[n] != null || !isEmpty(grown, ROWS)) {
+                System.arraycopy(grown, 0, allocate(n), 0, ROWS);
+            }
+        }
+    }
+
+    /**
+     * @return true if any seeds were picked in the chunk at the given
+     *         position or the eight chunks around it.
+     */
+    private boolean seedsAround(int chunkRow, int chunkCol)
+    {
+        int lastRow = Math.min(chunkRow + 1, chunksDown - 1);
+        int lastCol = Math.min(chunkCol + 1, chunksAcross - 1);
+        for(int r = Math.max(chunkRow - 1, 0); r <= lastRow; r++) {
+            for(int c = Math.max(chunkCol - 1, 0); c <= lastCol; c++) {
+                if(seeded[r * chunksAcross + c]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return One row of the seeds of a chunk with each seed also spread to
+     *         its left and right neighbours, including the seeds carried in
+     *         from the chunks either side. 0 for a row outside the field.
+     */
+    private long spreadAcross(int chunkRow, int chunkCol, int row)
+    {
+        if(chunkRow < 0 || chunkRow >= chunksDown) {
+            return 0;
+        }
+        long word = seedRow(chunkRow, chunkCol, row);
+        long fromLeft = seedRow(chunkRow, chunkCol - 1, row) >>> 63;
+        long fromRight = seedRow(chunkRow, chunkCol + 1, row) << 63;
+        return word | (word << 1) | fromLeft | (word >>> 1) | fromRight;
+    }
+
+    /**
+     * @return One row of the seeds of a chunk, or 0 if it has none.
+     */
+    private long seedRow(int chunkRow, int chunkCol, int row)
+    {
+        if(chunkCol < 0 || chunkCol >= chunksAcross) {
+            return 0;
+        }
+        int n = chunkRow * chunksAcross + chunkCol;
+        return seeded[n] ? seeds[n][row] : 0;
+    }
+
+    /**
+     * Fill seeds with a random selection of the given plants, each chosen with
+     * the given chance. Rather than drawing once per plant, this draws the
+     * number of plants to skip before the next seed, which is geometrically
+     * distributed, so whole words of skipped plants cost one bitCount. The
+     * plants are visited chunk by chunk.
+     */
+    private void pickSeeds(Vegetation from, double chance, RandomGenerator rand)
+    {
+        for(int n = 0; n < seeds.length; n++) {
+            if(seeds[n] == null) {
+                continue;
+            }
+            if(from.chunks[n] == null) {
+                // No plants here to seed from, so the space is given back.
+                seeds[n] = null;
+            }
+            else if(seeded[n]) {
+                Arrays.fill(seeds[n], 0);
+            }
+            seeded[n] = false;
+        }
+        if(chance <= 0) {
+            return;
+        }
+        long skip = nextSkip(chance, rand);
+        for(int n = 0; n < chunks.length; n++) {
+            long[] plants = from.chunks[n];
+            if(plants == null) {
+                continue;
+            }
+            for(int row = 0; row < ROWS; row++) {
+                long word = plants[row];
+                int inWord = Long.bitCount(word);
+                if(skip >= inWord) {
+                    skip -= inWord;
+                    continue;
+                }
+                while(word != 0) {
+                    long lowest = word & -word;
+                    word ^= lowest;
+                    if(skip == 0) {
+                        if(seeds[n] == null) {
+                            seeds[n] = new long[ROWS];
+                        }
+                        seeds[n][row] |= lowest;
+                        seeded[n] = true;
+                        skip = nextSkip(chance, rand);
+                    }
+                    else {
+                        skip--;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return How many plants to pass over before the next one that spreads.
+     */
+    private static long nextSkip(double chance, RandomGenerator rand)
+    {
+        if(chance >= 1) {
+            return 0;
+        }
+        return (long) (Math.log(1 - rand.nextDouble()) / Math.log(1 - chance));
+    }
+
+    /**
+     * @return The chunk with the given number, allocating it if need be.
+     */
+    private long[] allocate(int n)
+    {
+        if(chunks[n] == null) {
+            chunks[n] = new long[2 * ROWS];
+        }
+        return chunks[n];
+    }
+
+    /**
+     * @return true if the first length words are all 0.
+     */
+    private static boolean isEmpty(long[] words, int length)
+    {
+        for(int word = 0; word < length; word++) {
+            if(words[word] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of the chunk holding a cell.
+     */
+    private int chunkOf(int row, int col)
+    {
+        return (row >>> ChunkedCells.CHUNK_BITS) * chunksAcross + (col >>> ChunkedCells.CHUNK_BITS);
+    }
+}
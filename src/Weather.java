@@ -1,4 +1,3 @@
-import java.util.Random;
 /**
  * A class used to support the environment class in determining weather
  *
@@ -7,18 +7,6 @@
  */
 public class Zebra extends Animal implements Edible
 {
-    // Characteristics shared by all Zebras (class variables).
-    // The age at which a Zebra can start to breed.
-    protected int getBreedingAge() { return 24*6; }
-    // The age to which a Zebra can live.
-    protected int getMaxAge() { return 24*14; }
-    // The likelihood of a Zebra breeding.
-    protected double getBreedingProbability() { return 0.10; }
-    // The maximum number of births.
-    protected int getMaxLitterSize() { return 4; }
-    // How much "food" a zebra gives when eaten
-    public int getFoodValue() { return 24*14; }
-
     /**
      * Create a new Zebra. A Zebra may be created with age
      * zero (a newborn) or with a random age.
@@ -28,7 +16,7 @@ public class Zebra extends Animal implements Edible
      */
     public Zebra(boolean randomAge, Location location)
     {
-        super(randomAge, location);
+        super(Species.ZEBRA, randomAge, location);
     }
 
     @Override
@@ -73,18 +61,11 @@ public class Zebra extends Animal implements Edible
         return new Zebra(false, loc);
     }
 
-    /**
-     * Check if this animal can eat the given actor
-     * @param actor the actor to check
-     * @return true if this animal can eat `actor`
-     */
-    @Override
-    protected boolean canEat(Actor actor)
-    {
-        return actor instanceof Plant;
+    public int getFoodValue() {
+        return getSpecies().getFoodValue();
     }
 
     public void eat() {
-        setDead();
+        setDead(DeathCause.EATEN);
     }
 }
\ No newline at end of file